@@ -0,0 +1,130 @@
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+
+/**
+ * Runs database work off the Swing event dispatch thread and hands results
+ * back to it. Each call gets a {@link Cancellation} it can register its
+ * running statement with, so cancelling a task also cancels the query on
+ * the server instead of only abandoning the thread.
+ */
+public class AsyncDb implements AutoCloseable {
+    public interface Call<T> {
+        T call(Cancellation cancellation) throws Exception;
+    }
+
+    public static final class Cancellation {
+        private volatile boolean cancelled;
+        private volatile Statement statement;
+
+        public void track(Statement statement) throws SQLException {
+            this.statement = statement;
+            if (cancelled) {
+                statement.cancel();
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        void cancel() {
+            cancelled = true;
+            Statement running = statement;
+            if (running != null) {
+                try {
+                    running.cancel();
+                } catch (SQLException ignored) {
+                }
+            }
+        }
+    }
+
+    public static final class Task<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final Cancellation cancellation = new Cancellation();
+        private volatile Future<?> running;
+
+        public CompletableFuture<T> future() {
+            return result;
+        }
+
+        public void cancel() {
+            cancellation.cancel();
+            Future<?> current = running;
+            if (current != null) {
+                current.cancel(true);
+            }
+            result.cancel(false);
+        }
+
+        /** Delivers the outcome on the event dispatch thread; cancelled tasks report nothing. */
+        public Task<T> onEdt(Consumer<T> success, Consumer<Throwable> failure) {
+            result.whenComplete((value, error) -> {
+                if (error instanceof CancellationException) {
+                    return;
+                }
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                SwingUtilities.invokeLater(() -> {
+                    if (cause == null) {
+                        success.accept(value);
+                    } else {
+                        failure.accept(cause);
+                    }
+                });
+            });
+            return this;
+        }
+    }
+
+    private final ExecutorService executor;
+
+    public AsyncDb(String name, int threads) {
+        this.executor = newExecutor(name, threads);
+    }
+
+    public <T> Task<T> submit(Call<T> call) {
+        Task<T> task = new Task<>();
+        task.running = executor.submit(() -> {
+            if (task.cancellation.isCancelled()) {
+                return;
+            }
+            try {
+                task.result.complete(call.call(task.cancellation));
+            } catch (Throwable e) {
+                task.result.completeExceptionally(e);
+            }
+        });
+        return task;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Uses one virtual thread per task when the runtime supports them, and a
+     * fixed pool of daemon platform threads otherwise.
+     */
+    static ExecutorService newExecutor(String name, int threads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, name + "-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+}
@@ -0,0 +1,132 @@
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Night-by-night occupancy for every room over a fixed horizon starting at
+ * {@code horizonStart}. Each room owns {@link #WORDS} consecutive longs in one
+ * flat array, one bit per night, so checking a stay is a handful of masked
+ * word tests and answering "which of these rooms are free" never touches the
+ * bookings themselves.
+ *
+ * Rooms are addressed by their {@link RoomStore} slot. Stays are
+ * half-open: {@code to} is the check-out date and its night is not reserved;
+ * a {@code null} check-out reserves through the end of the horizon.
+ */
+public class AvailabilityCalendar {
+    public static final int HORIZON_DAYS = 365;
+    private static final int WORDS = (HORIZON_DAYS + 63) / 64;
+
+    private final LocalDate horizonStart;
+    private long[] nights = new long[16 * WORDS];
+
+    public AvailabilityCalendar(LocalDate horizonStart) {
+        this.horizonStart = horizonStart;
+    }
+
+    public LocalDate getHorizonStart() {
+        return horizonStart;
+    }
+
+    public LocalDate getHorizonEnd() {
+        return horizonStart.plusDays(HORIZON_DAYS);
+    }
+
+    public boolean covers(LocalDate from, LocalDate to) {
+        return !from.isBefore(horizonStart) && from.isBefore(getHorizonEnd())
+                && (to == null || !to.isAfter(getHorizonEnd()));
+    }
+
+    public synchronized boolean isFree(int slot, LocalDate from, LocalDate to) {
+        ensureCapacity(slot);
+        return isFree(slot * WORDS, dayIndex(from), endIndex(to));
+    }
+
+    /**
+     * Reserves the nights of a stay if all of them are free.
+     *
+     * @return {@code false} if any night was already taken
+     */
+    public synchronized boolean reserve(int slot, LocalDate from, LocalDate to) {
+        ensureCapacity(slot);
+        int base = slot * WORDS;
+        int first = dayIndex(from);
+        int end = endIndex(to);
+        if (!isFree(base, first, end)) {
+            return false;
+        }
+        set(base, first, end, true);
+        return true;
+    }
+
+    /** Marks a stay that is already committed elsewhere, regardless of overlaps. */
+    public synchronized void occupy(int slot, LocalDate from, LocalDate to) {
+        ensureCapacity(slot);
+        set(slot * WORDS, dayIndex(from), endIndex(to), true);
+    }
+
+    public synchronized void release(int slot, LocalDate from, LocalDate to) {
+        ensureCapacity(slot);
+        set(slot * WORDS, dayIndex(from), endIndex(to), false);
+    }
+
+    /** Returns the subset of {@code candidates} that is free for every night of the stay. */
+    public synchronized BitSet free(BitSet candidates, LocalDate from, LocalDate to) {
+        BitSet result = new BitSet();
+        int first = dayIndex(from);
+        int end = endIndex(to);
+        for (int slot = candidates.nextSetBit(0); slot >= 0; slot = candidates.nextSetBit(slot + 1)) {
+            if (slot * WORDS >= nights.length || isFree(slot * WORDS, first, end)) {
+                result.set(slot);
+            }
+        }
+        return result;
+    }
+
+    private boolean isFree(int base, int first, int end) {
+        for (int day = first; day < end; ) {
+            int word = day >>> 6;
+            int stop = Math.min(end, (word + 1) << 6);
+            if ((nights[base + word] & mask(day, stop)) != 0) {
+                return false;
+            }
+            day = stop;
+        }
+        return true;
+    }
+
+    private void set(int base, int first, int end, boolean occupied) {
+        for (int day = first; day < end; ) {
+            int word = day >>> 6;
+            int stop = Math.min(end, (word + 1) << 6);
+            if (occupied) {
+                nights[base + word] |= mask(day, stop);
+            } else {
+                nights[base + word] &= ~mask(day, stop);
+            }
+            day = stop;
+        }
+    }
+
+    private static long mask(int from, int to) {
+        long upper = (to & 63) == 0 ? -1L : (1L << (to & 63)) - 1;
+        return upper & (-1L << (from & 63));
+    }
+
+    private int dayIndex(LocalDate date) {
+        long days = ChronoUnit.DAYS.between(horizonStart, date);
+        return (int) Math.max(0, Math.min(HORIZON_DAYS, days));
+    }
+
+    private int endIndex(LocalDate to) {
+        return to == null ? HORIZON_DAYS : dayIndex(to);
+    }
+
+    private void ensureCapacity(int slot) {
+        int required = (slot + 1) * WORDS;
+        if (required > nights.length) {
+            nights = Arrays.copyOf(nights, Math.max(required, nights.length * 2));
+        }
+    }
+}
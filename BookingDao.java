@@ -0,0 +1,515 @@
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * Booking reads and writes against the {@code rooms}, {@code bookings} and
+ * {@code booking_rooms} tables. Each booked room is one {@code booking_rooms}
+ * row, indexed by room number for occupancy lookups. Cancelling stamps
+ * {@code bookings.cancelled_at} and keeps the rows, so the history can be
+ * exported; everything else reads live bookings only.
+ *
+ * A booking first checks that no active stay overlaps the requested nights,
+ * then claims every room with a conditional update on {@code available} and
+ * {@code version}; if any claim loses a race the whole transaction is rolled
+ * back and retried against fresh versions, so rooms are never oversold and no
+ * lock is held between the read and the write.
+ */
+public final class BookingDao {
+    private static final int MAX_ATTEMPTS = 5;
+
+    private BookingDao() {
+    }
+
+    public static long book(ConnectionPool pool, BookingRequest request) throws SQLException, RoomUnavailableException {
+        int[] roomNumbers = request.getRoomNumbers();
+        if (roomNumbers.length == 0) {
+            throw new IllegalArgumentException("A booking needs at least one room");
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try (Connection connection = pool.getConnection()) {
+                connection.setAutoCommit(false);
+                int[] versions = new int[roomNumbers.length];
+                int[] unavailable = readVersions(connection, roomNumbers, versions);
+                if (unavailable.length == 0) {
+                    unavailable = conflicts(request, activeStays(connection, roomNumbers));
+                }
+                if (unavailable.length > 0) {
+                    connection.rollback();
+                    throw new RoomUnavailableException(unavailable);
+                }
+                if (claimRooms(connection, roomNumbers, versions, request.isOpenEnded())) {
+                    long bookingId = insertBookings(connection, Collections.singletonList(request))[0];
+                    connection.commit();
+                    return bookingId;
+                }
+                connection.rollback();
+            }
+
+            if (attempt == MAX_ATTEMPTS) {
+                throw new SQLTransactionRollbackException("Booking " + request + " lost " + MAX_ATTEMPTS + " concurrent update races");
+            }
+            backOff(attempt);
+        }
+    }
+
+    /**
+     * Marks a booking cancelled and frees its rooms: rooms held open-ended
+     * become available again, and every room's version is bumped so that
+     * caches apply the cancellation in order. The booking and its rooms stay
+     * in the tables for {@link #forEachBookingRow}.
+     *
+     * @return {@code false} if there is no such booking, or it is already cancelled
+     */
+    public static boolean cancel(ConnectionPool pool, long bookingId) throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            int[] roomNumbers = new int[4];
+            int count = 0;
+            LocalDate checkIn = null;
+            LocalDate checkOut = null;
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "SELECT br.room_number, br.check_in, br.check_out FROM booking_rooms br JOIN bookings b ON b.id = br.booking_id "
+                            + "WHERE br.booking_id = ? AND b.cancelled_at IS NULL ORDER BY br.room_number FOR UPDATE")) {
+                stmt.setLong(1, bookingId);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        if (count == roomNumbers.length) {
+                            roomNumbers = Arrays.copyOf(roomNumbers, count * 2);
+                        }
+                        roomNumbers[count++] = rs.getInt(1);
+                        Date out = rs.getDate(3);
+                        checkIn = rs.getDate(2).toLocalDate();
+                        checkOut = out == null ? null : out.toLocalDate();
+                    }
+                }
+            }
+            if (count == 0) {
+                connection.rollback();
+                return false;
+            }
+            roomNumbers = Arrays.copyOf(roomNumbers, count);
+
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "UPDATE rooms SET available = available OR ?, version = version + 1 WHERE room_number = ?")) {
+                for (int roomNumber : roomNumbers) {
+                    stmt.setBoolean(1, checkOut == null);
+                    stmt.setInt(2, roomNumber);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+            try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM booking_name_words WHERE booking_id = ?")) {
+                stmt.setLong(1, bookingId);
+                stmt.executeUpdate();
+            }
+            try (PreparedStatement stmt = connection.prepareStatement("UPDATE bookings SET cancelled_at = CURRENT_TIMESTAMP WHERE id = ?")) {
+                stmt.setLong(1, bookingId);
+                stmt.executeUpdate();
+            }
+            BookingRequest stay = new BookingRequest(roomNumbers, null, null, null, null, checkIn, checkOut);
+            logRoomChanges(connection, RoomChangeFeed.CANCEL, new long[] {bookingId}, Collections.singletonList(stay));
+            connection.commit();
+            return true;
+        }
+    }
+
+    /**
+     * Finds live bookings whose guest name has a word starting with
+     * {@code query}, or whose contact or email starts with it, oldest first.
+     * Every predicate
+     * is a prefix match on an indexed column: the name's first word through
+     * {@code bookings.customer_name}, its later words through
+     * {@code booking_name_words}. The matching ids are limited first and then
+     * joined to their rooms in the same query.
+     */
+    public static List<BookingRecord> searchBookings(ConnectionPool pool, String query, int limit) throws SQLException {
+        String prefix = query.trim().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+        List<BookingRecord> bookings = new ArrayList<>();
+        if (prefix.length() == 1) {
+            return bookings;
+        }
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(
+                     "SELECT b.id, b.customer_name, b.contact, b.address, b.email, br.room_number FROM ("
+                             + "SELECT id FROM (SELECT id FROM bookings WHERE customer_name LIKE ? AND cancelled_at IS NULL "
+                             + "UNION SELECT booking_id FROM booking_name_words WHERE word LIKE ? "
+                             + "UNION SELECT id FROM bookings WHERE contact LIKE ? AND cancelled_at IS NULL "
+                             + "UNION SELECT id FROM bookings WHERE email LIKE ? AND cancelled_at IS NULL) candidates ORDER BY id LIMIT ?) matched "
+                             + "JOIN bookings b ON b.id = matched.id "
+                             + "LEFT JOIN booking_rooms br ON br.booking_id = b.id ORDER BY b.id, br.room_number")) {
+            stmt.setString(1, prefix);
+            stmt.setString(2, prefix);
+            stmt.setString(3, prefix);
+            stmt.setString(4, prefix);
+            stmt.setInt(5, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                readBookings(rs, (booking, checkIn, checkOut, cancelledAt) -> bookings.add(booking));
+            }
+        }
+        return bookings;
+    }
+
+    /** The words of a guest name after the first, which {@code booking_name_words} indexes for search. */
+    static List<String> laterNameWords(String name) {
+        List<String> words = new ArrayList<>();
+        if (name != null) {
+            String[] parts = name.trim().split("\\s+");
+            for (int i = 1; i < parts.length; i++) {
+                words.add(parts[i]);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Reads the version of each room in {@code roomNumbers} (sorted, distinct)
+     * into {@code versions} and returns the rooms that are missing or taken.
+     */
+    static int[] readVersions(Connection connection, int[] roomNumbers, int[] versions) throws SQLException {
+        boolean[] free = new boolean[roomNumbers.length];
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "SELECT room_number, available, version FROM rooms WHERE room_number IN (" + placeholders(roomNumbers.length) + ")")) {
+            for (int i = 0; i < roomNumbers.length; i++) {
+                stmt.setInt(i + 1, roomNumbers[i]);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int index = Arrays.binarySearch(roomNumbers, rs.getInt(1));
+                    free[index] = rs.getBoolean(2);
+                    versions[index] = rs.getInt(3);
+                }
+            }
+        }
+
+        int[] unavailable = new int[roomNumbers.length];
+        int count = 0;
+        for (int i = 0; i < roomNumbers.length; i++) {
+            if (!free[i]) {
+                unavailable[count++] = roomNumbers[i];
+            }
+        }
+        return Arrays.copyOf(unavailable, count);
+    }
+
+    /**
+     * Returns the requested rooms that already have a stay overlapping the
+     * request in {@code stays}, as loaded by {@link #activeStays}.
+     */
+    static int[] conflicts(BookingRequest request, Map<Integer, List<LocalDate[]>> stays) {
+        return Arrays.stream(request.getRoomNumbers()).filter(roomNumber -> {
+            for (LocalDate[] stay : stays.getOrDefault(roomNumber, Collections.emptyList())) {
+                if (request.overlaps(stay[0], stay[1])) {
+                    return true;
+                }
+            }
+            return false;
+        }).toArray();
+    }
+
+    /** Loads the live stays that have not yet ended for the given rooms, keyed by room number. */
+    static Map<Integer, List<LocalDate[]>> activeStays(Connection connection, int[] roomNumbers) throws SQLException {
+        Map<Integer, List<LocalDate[]>> stays = new HashMap<>();
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "SELECT br.room_number, br.check_in, br.check_out FROM booking_rooms br JOIN bookings b ON b.id = br.booking_id "
+                        + "WHERE br.room_number IN (" + placeholders(roomNumbers.length) + ") "
+                        + "AND (br.check_out IS NULL OR br.check_out > CURRENT_DATE) AND b.cancelled_at IS NULL")) {
+            for (int i = 0; i < roomNumbers.length; i++) {
+                stmt.setInt(i + 1, roomNumbers[i]);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Date checkOut = rs.getDate(3);
+                    stays.computeIfAbsent(rs.getInt(1), k -> new ArrayList<>())
+                            .add(new LocalDate[] {rs.getDate(2).toLocalDate(), checkOut == null ? null : checkOut.toLocalDate()});
+                }
+            }
+        }
+        return stays;
+    }
+
+    /**
+     * Claims the rooms at the versions read in this transaction. Open-ended
+     * stays also take the room out of {@code available}; dated stays only bump
+     * the version so that concurrent bookings of the same room conflict.
+     */
+    static boolean claimRooms(Connection connection, int[] roomNumbers, int[] versions, boolean openEnded) throws SQLException {
+        boolean[] holds = new boolean[roomNumbers.length];
+        Arrays.fill(holds, openEnded);
+        return claimRooms(connection, roomNumbers, versions, holds);
+    }
+
+    static boolean claimRooms(Connection connection, int[] roomNumbers, int[] versions, boolean[] holds) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "UPDATE rooms SET available = ?, version = version + 1 WHERE room_number = ? AND available = true AND version = ?")) {
+            for (int i = 0; i < roomNumbers.length; i++) {
+                stmt.setBoolean(1, !holds[i]);
+                stmt.setInt(2, roomNumbers[i]);
+                stmt.setInt(3, versions[i]);
+                stmt.addBatch();
+            }
+            int[] counts = stmt.executeBatch();
+            for (int count : counts) {
+                if (count == Statement.SUCCESS_NO_INFO) {
+                    return verifyClaimed(connection, roomNumbers, versions, holds);
+                }
+                if (count != 1) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static boolean verifyClaimed(Connection connection, int[] roomNumbers, int[] versions, boolean[] holds) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "SELECT room_number, available, version FROM rooms WHERE room_number IN (" + placeholders(roomNumbers.length) + ")")) {
+            for (int i = 0; i < roomNumbers.length; i++) {
+                stmt.setInt(i + 1, roomNumbers[i]);
+            }
+            int claimed = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    int index = Arrays.binarySearch(roomNumbers, rs.getInt(1));
+                    if (rs.getBoolean(2) != holds[index] && rs.getInt(3) == versions[index] + 1) {
+                        claimed++;
+                    }
+                }
+            }
+            return claimed == roomNumbers.length;
+        }
+    }
+
+    static long[] insertBookings(Connection connection, List<BookingRequest> requests) throws SQLException {
+        long[] ids = new long[requests.size()];
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "INSERT INTO bookings (customer_name, contact, address, email) VALUES (?, ?, ?, ?)",
+                Statement.RETURN_GENERATED_KEYS)) {
+            for (BookingRequest request : requests) {
+                stmt.setString(1, request.getName());
+                stmt.setString(2, request.getContact());
+                stmt.setString(3, request.getAddress());
+                stmt.setString(4, request.getEmail());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+
+            try (ResultSet keys = stmt.getGeneratedKeys()) {
+                for (int i = 0; i < ids.length && keys.next(); i++) {
+                    ids[i] = keys.getLong(1);
+                }
+            }
+        }
+
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "INSERT INTO booking_rooms (booking_id, room_number, check_in, check_out) VALUES (?, ?, ?, ?)")) {
+            for (int i = 0; i < ids.length; i++) {
+                BookingRequest request = requests.get(i);
+                for (int roomNumber : request.getRoomNumbers()) {
+                    stmt.setLong(1, ids[i]);
+                    stmt.setInt(2, roomNumber);
+                    stmt.setDate(3, Date.valueOf(request.getCheckIn()));
+                    stmt.setDate(4, request.getCheckOut() == null ? null : Date.valueOf(request.getCheckOut()));
+                    stmt.addBatch();
+                }
+            }
+            stmt.executeBatch();
+        }
+
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "INSERT IGNORE INTO booking_name_words (word, booking_id) VALUES (?, ?)")) {
+            for (int i = 0; i < ids.length; i++) {
+                for (String word : laterNameWords(requests.get(i).getName())) {
+                    stmt.setString(1, word);
+                    stmt.setLong(2, ids[i]);
+                    stmt.addBatch();
+                }
+            }
+            stmt.executeBatch();
+        }
+        logRoomChanges(connection, RoomChangeFeed.BOOK, ids, requests);
+        return ids;
+    }
+
+    /**
+     * Appends one {@code room_changes} row per booked room, carrying the
+     * room's state as updated in this transaction, so other instances pick
+     * the change up through {@link RoomChangeFeed} once it commits.
+     */
+    static void logRoomChanges(Connection connection, String kind, long[] bookingIds, List<BookingRequest> stays) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "INSERT INTO room_changes (room_number, available, version, kind, booking_id, check_in, check_out) "
+                        + "SELECT room_number, available, version, ?, ?, ?, ? FROM rooms WHERE room_number = ?")) {
+            for (int i = 0; i < bookingIds.length; i++) {
+                BookingRequest stay = stays.get(i);
+                for (int roomNumber : stay.getRoomNumbers()) {
+                    stmt.setString(1, kind);
+                    stmt.setLong(2, bookingIds[i]);
+                    stmt.setDate(3, Date.valueOf(stay.getCheckIn()));
+                    stmt.setDate(4, stay.getCheckOut() == null ? null : Date.valueOf(stay.getCheckOut()));
+                    stmt.setInt(5, roomNumber);
+                    stmt.addBatch();
+                }
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    /** Live bookings that include {@code roomNumber}, each with all of its rooms, in one query. */
+    public static List<BookingRecord> findBookingsForRoom(ConnectionPool pool, int roomNumber) throws SQLException {
+        List<BookingRecord> bookings = new ArrayList<>();
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(
+                     "SELECT b.id, b.customer_name, b.contact, b.address, b.email, other.room_number FROM booking_rooms br "
+                             + "JOIN bookings b ON b.id = br.booking_id "
+                             + "JOIN booking_rooms other ON other.booking_id = br.booking_id "
+                             + "WHERE br.room_number = ? AND b.cancelled_at IS NULL ORDER BY br.booking_id, other.room_number")) {
+            stmt.setInt(1, roomNumber);
+            try (ResultSet rs = stmt.executeQuery()) {
+                readBookings(rs, (booking, checkIn, checkOut, cancelledAt) -> bookings.add(booking));
+            }
+        }
+        return bookings;
+    }
+
+    public static Map<Integer, String> currentOccupants(ConnectionPool pool) throws SQLException {
+        Map<Integer, String> occupants = new HashMap<>();
+        try (Connection connection = pool.getConnection();
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT br.room_number, b.customer_name FROM rooms r "
+                             + "JOIN booking_rooms br ON br.room_number = r.room_number "
+                             + "AND br.booking_id = (SELECT MAX(x.booking_id) FROM booking_rooms x JOIN bookings xb ON xb.id = x.booking_id "
+                             + "WHERE x.room_number = r.room_number AND xb.cancelled_at IS NULL) "
+                             + "JOIN bookings b ON b.id = br.booking_id WHERE r.available = false")) {
+            while (rs.next()) {
+                occupants.put(rs.getInt(1), rs.getString(2));
+            }
+        }
+        return occupants;
+    }
+
+    public interface StayConsumer {
+        void accept(int roomNumber, LocalDate checkIn, LocalDate checkOut);
+    }
+
+    public static void forEachActiveStay(ConnectionPool pool, StayConsumer consumer) throws SQLException {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = RoomLoader.streaming(connection,
+                     "SELECT br.room_number, br.check_in, br.check_out FROM booking_rooms br JOIN bookings b ON b.id = br.booking_id "
+                             + "WHERE (br.check_out IS NULL OR br.check_out > CURRENT_DATE) AND b.cancelled_at IS NULL");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                Date checkOut = rs.getDate(3);
+                consumer.accept(rs.getInt(1), rs.getDate(2).toLocalDate(), checkOut == null ? null : checkOut.toLocalDate());
+            }
+        }
+    }
+
+    public interface BookingRow {
+        /** {@code cancelledAt} is when the booking was cancelled, or {@code null} while it stands. */
+        void accept(BookingRecord booking, LocalDate checkIn, LocalDate checkOut, LocalDateTime cancelledAt);
+    }
+
+    /** Streams every live booking with its rooms, oldest first. */
+    public static void forEachBooking(ConnectionPool pool, Consumer<BookingRecord> consumer) throws SQLException {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = RoomLoader.streaming(connection,
+                     "SELECT b.id, b.customer_name, b.contact, b.address, b.email, br.room_number "
+                             + "FROM bookings b JOIN booking_rooms br ON br.booking_id = b.id WHERE b.cancelled_at IS NULL "
+                             + "ORDER BY b.id, br.room_number");
+             ResultSet rs = stmt.executeQuery()) {
+            readBookings(rs, (booking, checkIn, checkOut, cancelledAt) -> consumer.accept(booking));
+        }
+    }
+
+    /** Streams every booking, cancelled ones included, with its rooms and stay, oldest first, a fetch at a time. */
+    public static void forEachBookingRow(ConnectionPool pool, BookingRow consumer) throws SQLException {
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = RoomLoader.streaming(connection,
+                     "SELECT b.id, b.customer_name, b.contact, b.address, b.email, br.room_number, br.check_in, br.check_out, "
+                             + "b.cancelled_at FROM bookings b JOIN booking_rooms br ON br.booking_id = b.id ORDER BY b.id, br.room_number");
+             ResultSet rs = stmt.executeQuery()) {
+            readBookings(rs, consumer);
+        }
+    }
+
+    /**
+     * Folds rows of {@code id, customer_name, contact, address, email,
+     * room_number[, check_in, check_out, cancelled_at]}, ordered by booking
+     * id, into one record per booking. A null room number (from an outer
+     * join) adds no room; the stay is taken from the booking's first row.
+     */
+    private static void readBookings(ResultSet rs, BookingRow consumer) throws SQLException {
+        boolean withStay = rs.getMetaData().getColumnCount() >= 9;
+        long bookingId = -1;
+        String[] guest = null;
+        LocalDate[] stay = new LocalDate[2];
+        LocalDateTime cancelledAt = null;
+        int[] rooms = new int[4];
+        int count = 0;
+        while (rs.next()) {
+            if (guest == null || rs.getLong(1) != bookingId) {
+                if (guest != null) {
+                    consumer.accept(new BookingRecord(bookingId, guest[0], guest[1], guest[2], guest[3], Arrays.copyOf(rooms, count)),
+                            stay[0], stay[1], cancelledAt);
+                }
+                bookingId = rs.getLong(1);
+                guest = new String[] {rs.getString(2), rs.getString(3), rs.getString(4), rs.getString(5)};
+                if (withStay) {
+                    Date checkIn = rs.getDate(7);
+                    Date checkOut = rs.getDate(8);
+                    Timestamp cancelled = rs.getTimestamp(9);
+                    stay = new LocalDate[] {checkIn == null ? null : checkIn.toLocalDate(), checkOut == null ? null : checkOut.toLocalDate()};
+                    cancelledAt = cancelled == null ? null : cancelled.toLocalDateTime();
+                }
+                count = 0;
+            }
+            int roomNumber = rs.getInt(6);
+            if (rs.wasNull()) {
+                continue;
+            }
+            if (count == rooms.length) {
+                rooms = Arrays.copyOf(rooms, count * 2);
+            }
+            rooms[count++] = roomNumber;
+        }
+        if (guest != null) {
+            consumer.accept(new BookingRecord(bookingId, guest[0], guest[1], guest[2], guest[3], Arrays.copyOf(rooms, count)),
+                    stay[0], stay[1], cancelledAt);
+        }
+    }
+
+    static String placeholders(int count) {
+        StringBuilder sql = new StringBuilder(count * 3);
+        for (int i = 0; i < count; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        return sql.toString();
+    }
+
+    private static void backOff(int attempt) throws SQLException {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(1, 5 << attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while retrying booking", e);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams bookings or rooms to a CSV or JSON-lines file, for finance's
+ * nightly pull and other downstream systems. Rows come from the
+ * repositories one at a time, from a database through a server-side cursor
+ * {@link RoomLoader#FETCH_SIZE} rows per round trip, and are encoded into
+ * {@link #BUFFER_BYTES} buffers written to a {@link FileChannel}, gzipped
+ * on the way if asked, so memory stays flat however large the tables are.
+ * The file is written beside the target and moved into place once
+ * complete, so a failed run never leaves a truncated export where a reader
+ * expects a whole one.
+ *
+ * <p>Bookings are exported with their status, cancelled ones included
+ * where the store keeps them, so the file is the whole booking history.
+ * Booking CSVs use the column names {@link BookingImporter} reads, so an
+ * export can be imported elsewhere as it is; the importer skips the
+ * cancelled rows. JSON lines use the field names of {@link BookingHttpServer}.
+ *
+ * <pre>
+ * java BookingExporter bookings|rooms bookings.csv|bookings.jsonl[.gz]
+ * </pre>
+ */
+public class BookingExporter {
+    public enum Table {
+        BOOKINGS, ROOMS
+    }
+
+    public enum Format {
+        CSV, JSONL
+    }
+
+    static final int BUFFER_BYTES = 1 << 16;
+
+    private final RoomRepository roomStore;
+    private final BookingRepository bookingStore;
+
+    public BookingExporter(RoomRepository roomStore, BookingRepository bookingStore) {
+        this.roomStore = roomStore;
+        this.bookingStore = bookingStore;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: java BookingExporter bookings|rooms out.csv|out.jsonl[.gz]");
+            return;
+        }
+        Table table = Table.valueOf(args[0].trim().toUpperCase(Locale.ROOT));
+        Path target = Paths.get(args[1]);
+        PersistenceConfig config = PersistenceConfig.load(PersistenceConfig.Mode.MYSQL,
+                "jdbc:mysql://localhost:3307/serenity_suites?rewriteBatchedStatements=true&useCursorFetch=true", "root", "", 2);
+        try (PersistenceConfig.Repositories store = config.open()) {
+            long start = System.nanoTime();
+            long rows = new BookingExporter(store.getRooms(), store.getBookings()).export(table, target);
+            System.out.printf("Exported %,d %s from %s to %s (%,d bytes) in %.1fs%n", rows, table.name().toLowerCase(Locale.ROOT),
+                    config, target, Files.size(target), (System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    /**
+     * Exports {@code table} in the format its file name implies: JSON lines
+     * for {@code .jsonl} or {@code .json}, CSV otherwise, gzipped if the name
+     * ends in {@code .gz}.
+     *
+     * @return the number of rows written
+     */
+    public long export(Table table, Path target) throws IOException, SQLException {
+        String name = target.getFileName().toString().toLowerCase(Locale.ROOT);
+        boolean gzip = name.endsWith(".gz");
+        if (gzip) {
+            name = name.substring(0, name.length() - 3);
+        }
+        Format format = name.endsWith(".jsonl") || name.endsWith(".json") ? Format.JSONL : Format.CSV;
+        return export(table, format, gzip, target);
+    }
+
+    /** @return the number of rows written */
+    public long export(Table table, Format format, boolean gzip, Path target) throws IOException, SQLException {
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+        long rows;
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = Channels.newOutputStream(channel);
+            out = gzip ? new GZIPOutputStream(out, BUFFER_BYTES) : new BufferedOutputStream(out, BUFFER_BYTES);
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_BYTES)) {
+                rows = table == Table.BOOKINGS ? writeBookings(writer, format) : writeRooms(writer, format);
+            }
+        } catch (IOException | SQLException | RuntimeException e) {
+            Files.deleteIfExists(partial);
+            throw e;
+        }
+        Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return rows;
+    }
+
+    private long writeBookings(Writer out, Format format) throws IOException, SQLException {
+        if (format == Format.CSV) {
+            out.write("id,name,contact,address,email,check_in,check_out,room_numbers,status,cancelled_at\n");
+        }
+        long[] rows = new long[1];
+        StringBuilder line = new StringBuilder(256);
+        try {
+            bookingStore.forEachBookingRow((booking, checkIn, checkOut, cancelledAt) -> {
+                line.setLength(0);
+                int[] rooms = booking.getRoomNumbers();
+                if (format == Format.CSV) {
+                    line.append(booking.getId())
+                            .append(',').append(csv(booking.getName()))
+                            .append(',').append(csv(booking.getContact()))
+                            .append(',').append(csv(booking.getAddress()))
+                            .append(',').append(csv(booking.getEmail()))
+                            .append(',').append(checkIn == null ? "" : checkIn.toString())
+                            .append(',').append(checkOut == null ? "" : checkOut.toString())
+                            .append(',');
+                    for (int i = 0; i < rooms.length; i++) {
+                        line.append(i == 0 ? "" : ";").append(rooms[i]);
+                    }
+                    line.append(',').append(cancelledAt == null ? "booked" : "cancelled")
+                            .append(',').append(cancelledAt == null ? "" : cancelledAt.toString());
+                } else {
+                    line.append("{\"id\":").append(booking.getId())
+                            .append(",\"name\":").append(BookingHttpServer.json(booking.getName()))
+                            .append(",\"contact\":").append(BookingHttpServer.json(booking.getContact()))
+                            .append(",\"address\":").append(BookingHttpServer.json(booking.getAddress()))
+                            .append(",\"email\":").append(BookingHttpServer.json(booking.getEmail()))
+                            .append(",\"checkIn\":").append(json(checkIn))
+                            .append(",\"checkOut\":").append(json(checkOut))
+                            .append(",\"rooms\":[");
+                    for (int i = 0; i < rooms.length; i++) {
+                        line.append(i == 0 ? "" : ",").append(rooms[i]);
+                    }
+                    line.append("],\"status\":\"").append(cancelledAt == null ? "booked" : "cancelled")
+                            .append("\",\"cancelledAt\":").append(cancelledAt == null ? "null" : "\"" + cancelledAt + "\"").append('}');
+                }
+                writeLine(out, line);
+                rows[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return rows[0];
+    }
+
+    private long writeRooms(Writer out, Format format) throws IOException, SQLException {
+        if (format == Format.CSV) {
+            out.write("room_number,type,price,available,version\n");
+        }
+        StringBuilder line = new StringBuilder(64);
+        try {
+            return roomStore.forEachRoom((roomNumber, type, price, available, version) -> {
+                line.setLength(0);
+                if (format == Format.CSV) {
+                    line.append(roomNumber).append(',').append(csv(type)).append(',').append(price)
+                            .append(',').append(available).append(',').append(version);
+                } else {
+                    line.append("{\"roomNumber\":").append(roomNumber)
+                            .append(",\"type\":").append(BookingHttpServer.json(type))
+                            .append(",\"price\":").append(price)
+                            .append(",\"available\":").append(available)
+                            .append(",\"version\":").append(version).append('}');
+                }
+                writeLine(out, line);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /** Appends a line; called from repository callbacks, which cannot throw {@link IOException}. */
+    private static void writeLine(Writer out, StringBuilder line) {
+        try {
+            out.append(line).write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String csv(String value) {
+        return value == null ? "" : BookingImporter.CsvReader.quote(value);
+    }
+
+    private static String json(LocalDate date) {
+        return date == null ? "null" : "\"" + date + "\"";
+    }
+}
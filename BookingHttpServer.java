@@ -0,0 +1,248 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Embedded HTTP endpoint over a {@link BookingService}, on the JDK's built-in
+ * server. Requests are handled on {@link AsyncDb#newExecutor}, which uses one
+ * virtual thread per request where the runtime has them, so requests
+ * blocked on the database do not hold up the rest.
+ *
+ * <pre>
+ * GET    /rooms                                all rooms
+ * GET    /rooms/available?type=&amp;from=&amp;to=      rooms free for the stay (default: tonight)
+ * GET    /bookings?q=                          bookings matching a name, contact or email prefix
+ * POST   /bookings                             form fields rooms=101,102 name contact address email checkIn checkOut
+ * DELETE /bookings/{id}                        cancel a booking
+ * GET    /metrics                              {@link HotelMetrics} in the Prometheus text format
+ * </pre>
+ *
+ * Responses are JSON. Invalid input is answered with 400 and rooms that are
+ * already taken with 409.
+ */
+public class BookingHttpServer implements AutoCloseable {
+    private final BookingService service;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public BookingHttpServer(BookingService service, int port) throws IOException {
+        this.service = service;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.executor = AsyncDb.newExecutor("booking-http", 200);
+        server.setExecutor(executor);
+        server.createContext("/rooms", exchange -> handle(exchange, this::rooms));
+        server.createContext("/bookings", exchange -> handle(exchange, this::bookings));
+        server.createContext("/metrics", exchange -> handle(exchange, HotelMetrics.get()::sendPrometheus));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws Exception;
+    }
+
+    private static void handle(HttpExchange exchange, Handler handler) throws IOException {
+        try {
+            handler.handle(exchange);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            send(exchange, 400, error(e.getMessage()));
+        } catch (RoomUnavailableException e) {
+            send(exchange, 409, "{\"error\":" + json(e.getMessage()) + ",\"rooms\":" + json(e.getRoomNumbers()) + "}");
+        } catch (Exception e) {
+            send(exchange, 500, error(e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void rooms(HttpExchange exchange) throws SQLException, IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            send(exchange, 405, error("Use GET"));
+            return;
+        }
+        String path = exchange.getRequestURI().getPath();
+        List<BookingService.RoomInfo> rooms;
+        if (path.equals("/rooms") || path.equals("/rooms/")) {
+            rooms = service.allRooms();
+        } else if (path.equals("/rooms/available")) {
+            Map<String, String> query = parseForm(exchange.getRequestURI().getRawQuery());
+            LocalDate from = query.containsKey("from") ? LocalDate.parse(query.get("from")) : LocalDate.now();
+            LocalDate to = query.containsKey("to") ? LocalDate.parse(query.get("to")) : from.plusDays(1);
+            if (!to.isAfter(from)) {
+                throw new IllegalArgumentException("to must be after from");
+            }
+            rooms = service.availableRooms(query.get("type"), from, to);
+        } else {
+            send(exchange, 404, error("Not found"));
+            return;
+        }
+
+        StringBuilder body = new StringBuilder(rooms.size() * 64 + 2).append('[');
+        for (int i = 0; i < rooms.size(); i++) {
+            BookingService.RoomInfo room = rooms.get(i);
+            body.append(i == 0 ? "" : ",")
+                    .append("{\"roomNumber\":").append(room.getRoomNumber())
+                    .append(",\"type\":").append(json(room.getType()))
+                    .append(",\"price\":").append(room.getPrice())
+                    .append(",\"available\":").append(room.isAvailable()).append('}');
+        }
+        send(exchange, 200, body.append(']').toString());
+    }
+
+    private void bookings(HttpExchange exchange) throws Exception {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        if ("GET".equals(method) && (path.equals("/bookings") || path.equals("/bookings/"))) {
+            String query = parseForm(exchange.getRequestURI().getRawQuery()).getOrDefault("q", "");
+            List<BookingRecord> matches = service.search(query);
+            StringBuilder body = new StringBuilder("[");
+            for (int i = 0; i < matches.size(); i++) {
+                BookingRecord booking = matches.get(i);
+                body.append(i == 0 ? "" : ",")
+                        .append("{\"id\":").append(booking.getId())
+                        .append(",\"name\":").append(json(booking.getName()))
+                        .append(",\"contact\":").append(json(booking.getContact()))
+                        .append(",\"address\":").append(json(booking.getAddress()))
+                        .append(",\"email\":").append(json(booking.getEmail()))
+                        .append(",\"rooms\":").append(json(booking.getRoomNumbers())).append('}');
+            }
+            send(exchange, 200, body.append(']').toString());
+        } else if ("POST".equals(method) && (path.equals("/bookings") || path.equals("/bookings/"))) {
+            Map<String, String> form = parseForm(readBody(exchange));
+            String[] rooms = required(form, "rooms").split(",");
+            int[] roomNumbers = new int[rooms.length];
+            for (int i = 0; i < rooms.length; i++) {
+                roomNumbers[i] = Integer.parseInt(rooms[i].trim());
+            }
+            LocalDate checkIn = form.containsKey("checkIn") ? LocalDate.parse(form.get("checkIn")) : LocalDate.now();
+            LocalDate checkOut = form.containsKey("checkOut") ? LocalDate.parse(form.get("checkOut")) : null;
+            BookingRequest request = new BookingRequest(roomNumbers, required(form, "name"), required(form, "contact"),
+                    required(form, "address"), required(form, "email"), checkIn, checkOut);
+            long bookingId = service.book(request);
+            send(exchange, 201, "{\"id\":" + bookingId + "}");
+        } else if ("DELETE".equals(method) && path.startsWith("/bookings/")) {
+            long bookingId = Long.parseLong(path.substring("/bookings/".length()));
+            if (service.cancel(bookingId)) {
+                send(exchange, 204, null);
+            } else {
+                send(exchange, 404, error("No booking " + bookingId));
+            }
+        } else {
+            send(exchange, 405, error("Unsupported " + method + " " + path));
+        }
+    }
+
+    private static String required(Map<String, String> form, String field) {
+        String value = form.get(field);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing " + field);
+        }
+        return value;
+    }
+
+    private static Map<String, String> parseForm(String encoded) {
+        Map<String, String> fields = new HashMap<>();
+        if (encoded == null || encoded.isEmpty()) {
+            return fields;
+        }
+        for (String pair : encoded.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            fields.put(key, value.trim());
+        }
+        return fields;
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + json(message) + "}";
+    }
+
+    private static String json(int[] values) {
+        StringBuilder array = new StringBuilder("[");
+        for (int i = 0; i < values.length; i++) {
+            array.append(i == 0 ? "" : ",").append(values[i]);
+        }
+        return array.append(']').toString();
+    }
+
+    static String json(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Serves the console database: {@code java BookingHttpServer [port]}. The
+     * store can be changed through {@link PersistenceConfig}.
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        PersistenceConfig.Repositories store = PersistenceConfig.load(PersistenceConfig.Mode.MYSQL,
+                "jdbc:mysql://localhost:3307/serenity_suites?rewriteBatchedStatements=true&useCursorFetch=true", "root", "", 20).open();
+        BookingService service = new CachingBookingService(store.getRooms(), store.getBookings(), Validators.Ruleset.CONSOLE);
+        BookingHttpServer server = new BookingHttpServer(service, port);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            service.close();
+            store.close();
+        }));
+        server.start();
+        System.out.println("Serenity Suites booking API listening on port " + server.getPort());
+    }
+}
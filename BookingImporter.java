@@ -0,0 +1,580 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads group and partner bookings from a CSV file. The file is streamed in
+ * chunks of {@link #CHUNK_ROWS} records, so memory stays flat however large
+ * it is: each chunk's rows are validated in parallel with the same
+ * {@link Validators} rules the front ends use (the desk's unless
+ * {@code --rules} says otherwise), given rooms one row at a time against an
+ * {@link AvailabilityCalendar} of the stays already stored, and written
+ * while the next chunk is read and validated, {@link #WRITE_BATCH} at a
+ * time through {@link BookingRepository#bookAll}: batched transactions
+ * against a database, one journal force per batch in memory.
+ *
+ * <p>The first line names the columns, in any order:
+ * <pre>
+ * name, contact, address, email, check_in   required
+ * check_out                                 blank or missing for an open-ended stay
+ * room_type                                 Single, Double, Suite...; blank for any type
+ * room_count                                rooms to give the guest, 1 by default
+ * room_numbers                              exact rooms, e.g. 204;205, instead of a type and count
+ * cancelled_at                              set on exported bookings that were cancelled, which are not imported
+ * </pre>
+ * Dates are ISO ({@code 2025-07-01}). Every row that is not imported is
+ * written to the error report as its line number and the reason, followed
+ * by the record's own columns, so the report can be fixed and imported
+ * again as it is.
+ *
+ * <pre>
+ * java BookingImporter bookings.csv [--rules desk|console|classic] [--errors bookings.errors.csv]
+ * </pre>
+ */
+public class BookingImporter {
+    static final int CHUNK_ROWS = 10_000;
+    static final int WRITE_BATCH = 500;
+    private static final int MAX_ROOMS_PER_ROW = 10;
+    private static final String[] REQUIRED = {"name", "contact", "address", "email", "check_in"};
+
+    /** What one import did. */
+    public static final class Result {
+        private final long rows;
+        private final long imported;
+        private final long elapsedNanos;
+
+        Result(long rows, long imported, long elapsedNanos) {
+            this.rows = rows;
+            this.imported = imported;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getImported() {
+            return imported;
+        }
+
+        public long getRejected() {
+            return rows - imported;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = elapsedNanos / 1e9;
+            return String.format("%,d rows: %,d imported, %,d rejected in %.1fs (%,.0f rows/s)",
+                    rows, imported, getRejected(), seconds, seconds == 0 ? 0 : rows / seconds);
+        }
+    }
+
+    /** One CSV record and, once validated and given rooms, the booking it becomes. */
+    private static final class Row {
+        private final long line;
+        private final String[] fields;
+        private BookingRequest request;
+        private String[] wanted;
+        private int[] slots;
+        private String error;
+        private boolean saved;
+
+        Row(long line, String[] fields) {
+            this.line = line;
+            this.fields = fields;
+        }
+    }
+
+    private final RoomRepository roomStore;
+    private final BookingRepository bookingStore;
+    private final Validators.Ruleset rules;
+    private final RoomStore rooms = new RoomStore();
+    private final Map<String, int[]> slotsByType = new HashMap<>();
+    private int[] numberBySlot;
+    private final Map<String, Integer> cursors = new HashMap<>();
+    private AvailabilityCalendar calendar;
+    private Map<String, Integer> columns;
+
+    public BookingImporter(RoomRepository roomStore, BookingRepository bookingStore, Validators.Ruleset rules) {
+        this.roomStore = roomStore;
+        this.bookingStore = bookingStore;
+        this.rules = rules;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.out.println("Usage: java BookingImporter bookings.csv [--rules desk|console|classic] [--errors path]");
+            return;
+        }
+        Path input = Paths.get(args[0]);
+        Validators.Ruleset rules = Validators.Ruleset.DESK;
+        Path errors = null;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--rules":
+                    rules = Validators.Ruleset.valueOf(args[i + 1].trim().toUpperCase(Locale.ROOT));
+                    break;
+                case "--errors":
+                    errors = Paths.get(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (errors == null) {
+            String name = input.getFileName().toString();
+            errors = input.resolveSibling((name.endsWith(".csv") ? name.substring(0, name.length() - 4) : name) + ".errors.csv");
+        }
+        PersistenceConfig config = PersistenceConfig.load(PersistenceConfig.Mode.MYSQL,
+                "jdbc:mysql://localhost:3307/serenity_suites?rewriteBatchedStatements=true&useCursorFetch=true", "root", "", 10);
+        try (PersistenceConfig.Repositories store = config.open()) {
+            System.out.println("Importing " + input + " into " + config);
+            Result result = new BookingImporter(store.getRooms(), store.getBookings(), rules).importFile(input, errors);
+            System.out.println(result);
+            if (result.getRejected() > 0) {
+                System.out.println("Rejected rows are listed in " + errors);
+            }
+        }
+    }
+
+    /**
+     * Imports every record of {@code csv}, writing the ones that could not be
+     * imported to {@code errorReport}, which is replaced if it exists.
+     *
+     * @throws IllegalArgumentException if the header lacks a required column
+     */
+    public Result importFile(Path csv, Path errorReport) throws IOException, SQLException {
+        long start = System.nanoTime();
+        loadRoomsAndStays();
+        ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "import-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long rows = 0;
+        long imported = 0;
+        try (CsvReader reader = new CsvReader(Files.newBufferedReader(csv, StandardCharsets.UTF_8));
+             BufferedWriter errors = Files.newBufferedWriter(errorReport, StandardCharsets.UTF_8)) {
+            String[] header = reader.next();
+            readHeader(header);
+            errors.write("line,error");
+            writeFields(errors, header);
+            List<Row> written = null;
+            Future<Void> writing = null;
+            List<Row> chunk;
+            while (!(chunk = readChunk(reader)).isEmpty()) {
+                rows += chunk.size();
+                chunk.parallelStream().forEach(this::parse);
+                if (written != null) {
+                    // frees the nights of the last chunk's failed rows before this one is given rooms
+                    imported += settle(written, writing, errors);
+                }
+                allocate(chunk);
+                List<Row> toWrite = chunk;
+                writing = writer.submit(() -> write(toWrite));
+                written = chunk;
+            }
+            if (written != null) {
+                imported += settle(written, writing, errors);
+            }
+        } finally {
+            writer.shutdownNow();
+        }
+        return new Result(rows, imported, System.nanoTime() - start);
+    }
+
+    private void loadRoomsAndStays() throws SQLException {
+        calendar = new AvailabilityCalendar(LocalDate.now());
+        roomStore.forEachRoom((roomNumber, type, price, available, version) ->
+                rooms.add(roomNumber, type, price, available, version));
+        bookingStore.forEachActiveStay((roomNumber, checkIn, checkOut) -> {
+            int slot = rooms.slot(roomNumber);
+            if (slot >= 0) {
+                calendar.occupy(slot, checkIn, checkOut);
+            }
+        });
+        List<BookingService.RoomInfo> all = rooms.all();
+        numberBySlot = new int[all.size()];
+        Map<String, List<Integer>> byType = new HashMap<>();
+        for (int slot = 0; slot < all.size(); slot++) {
+            BookingService.RoomInfo room = all.get(slot);
+            numberBySlot[slot] = room.getRoomNumber();
+            byType.computeIfAbsent(room.getType().toLowerCase(Locale.ROOT), t -> new ArrayList<>()).add(slot);
+            byType.computeIfAbsent("", t -> new ArrayList<>()).add(slot);
+        }
+        for (Map.Entry<String, List<Integer>> entry : byType.entrySet()) {
+            slotsByType.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    private void readHeader(String[] header) {
+        if (header == null) {
+            throw new IllegalArgumentException("The file is empty; the first line must name the columns");
+        }
+        columns = new HashMap<>();
+        for (int i = 0; i < header.length; i++) {
+            columns.put(header[i].trim().toLowerCase(Locale.ROOT).replace(' ', '_'), i);
+        }
+        for (String column : REQUIRED) {
+            if (!columns.containsKey(column)) {
+                throw new IllegalArgumentException("Missing column '" + column + "'; the header must name " + String.join(", ", REQUIRED));
+            }
+        }
+    }
+
+    private static List<Row> readChunk(CsvReader reader) throws IOException {
+        List<Row> chunk = new ArrayList<>(CHUNK_ROWS);
+        String[] fields;
+        while (chunk.size() < CHUNK_ROWS && (fields = reader.next()) != null) {
+            if (fields.length == 1 && fields[0].trim().isEmpty()) {
+                continue;
+            }
+            chunk.add(new Row(reader.getRecordLine(), fields));
+        }
+        return chunk;
+    }
+
+    private String field(Row row, String column) {
+        Integer index = columns.get(column);
+        return index == null || index >= row.fields.length ? "" : row.fields[index].trim();
+    }
+
+    /** Validates a row on its own, without touching shared state; runs on any thread. */
+    private void parse(Row row) {
+        String cancelledAt = field(row, "cancelled_at");
+        if (!cancelledAt.isEmpty()) {
+            row.error = "Cancelled at " + cancelledAt;
+            return;
+        }
+        String name = field(row, "name");
+        String contact = field(row, "contact");
+        String address = field(row, "address");
+        String email = field(row, "email");
+        EnumSet<Validators.Field> invalid = Validators.validate(rules, name, contact, address, email);
+        if (!invalid.isEmpty()) {
+            row.error = "Invalid " + invalid.toString().toLowerCase(Locale.ROOT);
+            return;
+        }
+        LocalDate checkIn;
+        LocalDate checkOut;
+        try {
+            checkIn = LocalDate.parse(field(row, "check_in"));
+            String out = field(row, "check_out");
+            checkOut = out.isEmpty() ? null : LocalDate.parse(out);
+        } catch (DateTimeParseException e) {
+            row.error = "Invalid date '" + e.getParsedString() + "'";
+            return;
+        }
+        if (checkOut != null && !checkOut.isAfter(checkIn)) {
+            row.error = "Check-out " + checkOut + " must be after check-in " + checkIn;
+            return;
+        }
+        if (!calendar.covers(checkIn, checkOut)) {
+            row.error = "Stay is outside " + calendar.getHorizonStart() + " to " + calendar.getHorizonEnd();
+            return;
+        }
+        String numbers = field(row, "room_numbers");
+        String[] wanted;
+        if (!numbers.isEmpty()) {
+            wanted = numbers.split("[;,\\s]+");
+        } else {
+            String type = field(row, "room_type").toLowerCase(Locale.ROOT);
+            String count = field(row, "room_count");
+            int rooms;
+            try {
+                rooms = count.isEmpty() ? 1 : Integer.parseInt(count);
+            } catch (NumberFormatException e) {
+                row.error = "Invalid room count '" + count + "'";
+                return;
+            }
+            if (rooms < 1 || rooms > MAX_ROOMS_PER_ROW) {
+                row.error = "Room count must be 1 to " + MAX_ROOMS_PER_ROW;
+                return;
+            }
+            if (!slotsByType.containsKey(type)) {
+                row.error = "Unknown room type '" + field(row, "room_type") + "'";
+                return;
+            }
+            wanted = new String[rooms];
+            Arrays.fill(wanted, "*" + type);
+        }
+        row.wanted = wanted;
+        row.request = new BookingRequest(new int[0], name, contact, address, email, checkIn, checkOut);
+    }
+
+    /**
+     * Gives each valid row its rooms, in file order: the listed rooms if they
+     * are free, otherwise free rooms of the type, starting after the last
+     * room given for that type so a full hotel is not rescanned from the top.
+     */
+    private void allocate(List<Row> chunk) {
+        for (Row row : chunk) {
+            if (row.error != null) {
+                continue;
+            }
+            LocalDate from = row.request.getCheckIn();
+            LocalDate to = row.request.getCheckOut();
+            int[] slots = new int[row.wanted.length];
+            int taken = 0;
+            for (String wanted : row.wanted) {
+                int slot = wanted.startsWith("*") ? reserveAny(wanted.substring(1), from, to) : reserveNumber(row, wanted, from, to);
+                if (slot < 0) {
+                    if (row.error == null) {
+                        row.error = "No free " + (wanted.length() > 1 ? wanted.substring(1) + " " : "") + "room for " + from + (to == null ? " onwards" : " to " + to);
+                    }
+                    break;
+                }
+                slots[taken++] = slot;
+            }
+            if (row.error != null) {
+                for (int i = 0; i < taken; i++) {
+                    calendar.release(slots[i], from, to);
+                }
+                continue;
+            }
+            int[] roomNumbers = new int[slots.length];
+            for (int i = 0; i < slots.length; i++) {
+                roomNumbers[i] = numberBySlot[slots[i]];
+            }
+            row.slots = slots;
+            BookingRequest request = row.request;
+            row.request = new BookingRequest(roomNumbers, request.getName(), request.getContact(), request.getAddress(),
+                    request.getEmail(), from, to);
+        }
+    }
+
+    private int reserveNumber(Row row, String wanted, LocalDate from, LocalDate to) {
+        int slot;
+        try {
+            slot = rooms.slot(Integer.parseInt(wanted));
+        } catch (NumberFormatException e) {
+            row.error = "Invalid room number '" + wanted + "'";
+            return -1;
+        }
+        if (slot < 0) {
+            row.error = "Unknown room " + wanted;
+            return -1;
+        }
+        if (!calendar.reserve(slot, from, to)) {
+            row.error = "Room " + wanted + " is already booked for " + from + (to == null ? " onwards" : " to " + to);
+            return -1;
+        }
+        return slot;
+    }
+
+    private int reserveAny(String type, LocalDate from, LocalDate to) {
+        int[] candidates = slotsByType.get(type);
+        int cursor = cursors.getOrDefault(type, 0);
+        for (int tried = 0; tried < candidates.length; tried++) {
+            int index = (cursor + tried) % candidates.length;
+            int slot = candidates[index];
+            if (calendar.reserve(slot, from, to)) {
+                cursors.put(type, index + 1);
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /** Saves the chunk's allocated rows in batches; runs on the writer thread. */
+    private Void write(List<Row> chunk) throws SQLException {
+        List<Row> batch = new ArrayList<>(WRITE_BATCH);
+        List<BookingRequest> requests = new ArrayList<>(WRITE_BATCH);
+        for (int i = 0; i < chunk.size(); i++) {
+            Row row = chunk.get(i);
+            if (row.error == null) {
+                batch.add(row);
+                requests.add(row.request);
+            }
+            if (batch.size() == WRITE_BATCH || (i == chunk.size() - 1 && !batch.isEmpty())) {
+                Exception[] failures = new Exception[batch.size()];
+                long[] ids = bookingStore.bookAll(requests, failures);
+                for (int b = 0; b < ids.length; b++) {
+                    Row written = batch.get(b);
+                    written.saved = ids[b] >= 0;
+                    if (!written.saved) {
+                        Exception failure = failures[b];
+                        written.error = failure instanceof RoomUnavailableException ? failure.getMessage()
+                                : "Not saved: " + failure.getMessage();
+                    }
+                }
+                batch.clear();
+                requests.clear();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Waits for a chunk's writes, reports its rejected rows and frees the
+     * nights of bookings that were not saved.
+     *
+     * @return the number of bookings saved
+     */
+    private long settle(List<Row> chunk, Future<Void> writing, Writer errors) throws IOException, SQLException {
+        try {
+            writing.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing bookings", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new IllegalStateException("Writing bookings failed", e.getCause());
+        }
+        long saved = 0;
+        for (Row row : chunk) {
+            if (row.saved) {
+                saved++;
+                continue;
+            }
+            if (row.slots != null) {
+                for (int slot : row.slots) {
+                    calendar.release(slot, row.request.getCheckIn(), row.request.getCheckOut());
+                }
+            }
+            errors.write(Long.toString(row.line));
+            errors.write(',');
+            errors.write(CsvReader.quote(row.error));
+            writeFields(errors, row.fields);
+        }
+        return saved;
+    }
+
+    private static void writeFields(Writer out, String[] fields) throws IOException {
+        for (String field : fields) {
+            out.write(',');
+            out.write(CsvReader.quote(field));
+        }
+        out.write('\n');
+    }
+
+    /**
+     * Reads RFC 4180 records: comma-separated fields, optionally in double
+     * quotes, where a quoted field may hold commas, line breaks and doubled
+     * quotes. Lines may end in CRLF or LF.
+     */
+    static final class CsvReader implements AutoCloseable {
+        private final Reader in;
+        private final char[] buffer = new char[1 << 16];
+        private int position;
+        private int limit;
+        private long line = 1;
+        private long recordLine;
+        private final StringBuilder field = new StringBuilder(64);
+        private final List<String> fields = new ArrayList<>();
+
+        CsvReader(Reader in) {
+            this.in = in instanceof BufferedReader ? in : new BufferedReader(in);
+        }
+
+        /** The line the last record returned by {@link #next} started on, from 1. */
+        long getRecordLine() {
+            return recordLine;
+        }
+
+        /** The next record's fields, or {@code null} at the end of the input. */
+        String[] next() throws IOException {
+            int c = read();
+            if (c < 0) {
+                return null;
+            }
+            recordLine = line;
+            fields.clear();
+            field.setLength(0);
+            boolean quoted = false;
+            boolean wasQuoted = false;
+            while (true) {
+                if (quoted) {
+                    if (c < 0) {
+                        throw new IOException("Unterminated quoted field starting on line " + recordLine);
+                    }
+                    if (c == '"') {
+                        c = read();
+                        if (c == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            continue;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0 && !wasQuoted) {
+                    quoted = true;
+                    wasQuoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                    wasQuoted = false;
+                } else if (c == '\n' || c < 0) {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    int end = field.length();
+                    if (!wasQuoted && end > 0 && field.charAt(end - 1) == '\r') {
+                        field.setLength(end - 1);
+                    }
+                    fields.add(field.toString());
+                    return fields.toArray(new String[0]);
+                } else if (c != '\r' || !wasQuoted) {
+                    field.append((char) c);
+                }
+                c = read();
+            }
+        }
+
+        private int read() throws IOException {
+            if (position == limit) {
+                limit = in.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++];
+        }
+
+        /** Quotes a value if it holds a comma, quote or line break. */
+        static String quote(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
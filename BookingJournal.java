@@ -0,0 +1,606 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of room and booking events, so in-memory state survives a
+ * restart. Events are written to memory-mapped segment files; {@link #sync}
+ * forces them to disk, and callers that sync at the same time share one
+ * force. A snapshot replaces everything logged before it with the current
+ * rooms and live bookings, so recovery reads the snapshot plus the segments
+ * written since.
+ *
+ * <p>Every record is {@code [length][crc32][payload]}. Recovery stops at the
+ * first record that is empty or fails its checksum, which is where a crash
+ * interrupted the last write, and appending resumes from there.
+ *
+ * <p>Once a force fails, nothing after it can be known to be on disk, so
+ * every later append and sync fails as well until the journal is reopened.
+ *
+ * <p>An open journal holds an exclusive lock on {@value #LOCK_FILE} in its
+ * directory, so a second process, or a second journal in this one, fails
+ * to open it rather than interleaving records with the first.
+ */
+public final class BookingJournal implements AutoCloseable {
+    /** Receives events, during recovery and when a snapshot is written. */
+    public interface Handler {
+        void roomSaved(int roomNumber, String type, double price);
+
+        void booked(long bookingId, BookingRequest request);
+
+        void cancelled(long bookingId);
+    }
+
+    /** Writes the whole current state as events; see {@link #writeSnapshot}. */
+    public interface State {
+        void writeTo(Handler out);
+    }
+
+    static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    private static final byte ROOM = 1;
+    private static final byte BOOK = 2;
+    private static final byte CANCEL = 3;
+    private static final byte END = 4;
+    private static final int HEADER = 8;
+    private static final long OPEN_ENDED = Long.MIN_VALUE;
+    static final String LOCK_FILE = "journal.lock";
+    private static final Set<Path> LOCKED = ConcurrentHashMap.newKeySet();
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Encoder encoder = new Encoder();
+    private Path lockedPath;
+    private FileChannel lockChannel;
+    private long segmentNumber;
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long written;
+    private int eventsSinceSnapshot;
+    private boolean snapshotting;
+    private boolean closed;
+    private IOException failure;
+
+    private final Object syncLock = new Object();
+    private volatile long durable;
+    private int forcedOffset;
+
+    private BookingJournal(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    public static BookingJournal open(Path directory, Handler handler) throws IOException {
+        return open(directory, DEFAULT_SEGMENT_SIZE, handler);
+    }
+
+    /** Opens the journal in {@code directory}, replaying its snapshot and later events into {@code handler}. */
+    static BookingJournal open(Path directory, int segmentSize, Handler handler) throws IOException {
+        Files.createDirectories(directory);
+        BookingJournal journal = new BookingJournal(directory, segmentSize);
+        journal.lock();
+        try {
+            journal.recover(handler);
+        } catch (IOException | RuntimeException e) {
+            journal.unlock();
+            throw e;
+        }
+        return journal;
+    }
+
+    /**
+     * Takes the directory's lock. Journals in this process are told apart
+     * before the file is touched, because closing a second channel on the
+     * lock file could drop the first one's lock on some systems.
+     */
+    private void lock() throws IOException {
+        Path path = directory.toRealPath();
+        if (!LOCKED.add(path)) {
+            throw inUse();
+        }
+        try {
+            FileChannel lockFile = FileChannel.open(path.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            boolean locked = false;
+            try {
+                locked = lockFile.tryLock() != null;
+            } finally {
+                if (!locked) {
+                    lockFile.close();
+                }
+            }
+            if (!locked) {
+                throw inUse();
+            }
+            lockChannel = lockFile;
+            lockedPath = path;
+        } catch (IOException | RuntimeException e) {
+            LOCKED.remove(path);
+            throw e;
+        }
+    }
+
+    private IOException inUse() {
+        return new IOException("The journal in " + directory + " is already open elsewhere;"
+                + " give each desk its own journal directory");
+    }
+
+    private void unlock() {
+        try {
+            lockChannel.close();
+        } catch (IOException e) {
+            // Closing the channel releases the lock either way.
+        }
+        LOCKED.remove(lockedPath);
+    }
+
+    private void recover(Handler handler) throws IOException {
+        List<Long> snapshots = list("snapshot-", ".snap");
+        List<Long> segments = list("segment-", ".log");
+        long first = snapshots.isEmpty() ? 0 : snapshots.get(snapshots.size() - 1);
+        if (!snapshots.isEmpty()) {
+            replaySnapshot(snapshotPath(first), handler);
+        }
+
+        int end = 0;
+        long last = first;
+        for (long number : segments) {
+            if (number < first) {
+                Files.deleteIfExists(segmentPath(number));
+                continue;
+            }
+            last = number;
+            try (FileChannel in = FileChannel.open(segmentPath(number), StandardOpenOption.READ)) {
+                ByteBuffer buffer = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+                end = replay(buffer, handler, false);
+            }
+        }
+        for (long number : snapshots) {
+            if (number < first) {
+                Files.deleteIfExists(snapshotPath(number));
+            }
+        }
+
+        map(last);
+        // Whatever lies past the end is a torn record; clear it so later appends cannot leave part of it readable.
+        for (int i = end; i < segmentSize; i++) {
+            if (segment.get(i) != 0) {
+                segment.put(i, (byte) 0);
+            }
+        }
+        segment.position(end);
+        forcedOffset = end;
+    }
+
+    private List<Long> list(String prefix, String suffix) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                numbers.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    private void replaySnapshot(Path file, Handler handler) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (replay(in.map(FileChannel.MapMode.READ_ONLY, 0, in.size()), handler, true) < 0) {
+                throw new IOException("Snapshot " + file + " is incomplete or corrupt");
+            }
+        }
+    }
+
+    /**
+     * Replays records until the end of the valid data and returns where it
+     * ends. A snapshot must finish with its end record; -1 if it does not.
+     */
+    private int replay(ByteBuffer buffer, Handler handler, boolean snapshot) {
+        CRC32 crc = new CRC32();
+        int position = 0;
+        while (position + HEADER <= buffer.limit()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || length > buffer.limit() - position - HEADER) {
+                break;
+            }
+            ByteBuffer payload = buffer.duplicate();
+            payload.limit(position + HEADER + length).position(position + HEADER);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                break;
+            }
+            byte kind = payload.get();
+            if (kind == END) {
+                return snapshot ? position + HEADER + length : position;
+            }
+            apply(kind, payload, handler);
+            position += HEADER + length;
+            if (!snapshot) {
+                eventsSinceSnapshot++;
+            }
+        }
+        return snapshot ? -1 : position;
+    }
+
+    private static void apply(byte kind, ByteBuffer in, Handler handler) {
+        switch (kind) {
+            case ROOM:
+                handler.roomSaved(in.getInt(), readString(in), in.getDouble());
+                break;
+            case BOOK:
+                long bookingId = in.getLong();
+                LocalDate checkIn = LocalDate.ofEpochDay(in.getLong());
+                long checkOut = in.getLong();
+                int[] roomNumbers = new int[in.getShort()];
+                for (int i = 0; i < roomNumbers.length; i++) {
+                    roomNumbers[i] = in.getInt();
+                }
+                handler.booked(bookingId, new BookingRequest(roomNumbers, readString(in), readString(in), readString(in),
+                        readString(in), checkIn, checkOut == OPEN_ENDED ? null : LocalDate.ofEpochDay(checkOut)));
+                break;
+            case CANCEL:
+                handler.cancelled(in.getLong());
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record " + kind);
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        if (length == 0xFFFF) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("segment-%016d.log", number));
+    }
+
+    private Path snapshotPath(long number) {
+        return directory.resolve(String.format("snapshot-%016d.snap", number));
+    }
+
+    private void map(long number) throws IOException {
+        channel = FileChannel.open(segmentPath(number), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segmentNumber = number;
+    }
+
+    /** Moves appends to a new segment once everything in the current one is on disk. */
+    private void roll() throws IOException {
+        try {
+            segment.force();
+        } catch (UncheckedIOException e) {
+            throw fail(e.getCause());
+        }
+        durable = written;
+        forcedOffset = 0;
+        channel.close();
+        map(segmentNumber + 1);
+    }
+
+    public synchronized long appendRoom(int roomNumber, String type, double price) throws IOException {
+        encoder.start(ROOM).putInt(roomNumber).putString(type).putDouble(price);
+        return append();
+    }
+
+    public synchronized long appendBooking(long bookingId, BookingRequest request) throws IOException {
+        int[] roomNumbers = request.getRoomNumbers();
+        encoder.start(BOOK).putLong(bookingId).putLong(request.getCheckIn().toEpochDay())
+                .putLong(request.isOpenEnded() ? OPEN_ENDED : request.getCheckOut().toEpochDay())
+                .putShort(roomNumbers.length);
+        for (int roomNumber : roomNumbers) {
+            encoder.putInt(roomNumber);
+        }
+        encoder.putString(request.getName()).putString(request.getContact()).putString(request.getAddress())
+                .putString(request.getEmail());
+        return append();
+    }
+
+    public synchronized long appendCancel(long bookingId) throws IOException {
+        encoder.start(CANCEL).putLong(bookingId);
+        return append();
+    }
+
+    /** Copies the encoded record into the segment and returns the position {@link #sync} needs to reach. */
+    private long append() throws IOException {
+        checkWritable();
+        ByteBuffer record = encoder.finish();
+        if (record.remaining() > segmentSize) {
+            throw new IOException("Journal record of " + record.remaining() + " bytes exceeds the segment size");
+        }
+        if (segment.remaining() < record.remaining()) {
+            roll();
+        }
+        segment.put(record);
+        written += record.limit();
+        eventsSinceSnapshot++;
+        return written;
+    }
+
+    /**
+     * Returns once every record up to {@code position} is on disk. Callers
+     * arriving while a force is running wait for it and are usually covered
+     * by the next one, so concurrent bookings share their forces.
+     */
+    public void sync(long position) throws IOException {
+        if (position <= durable) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (position <= durable) {
+                return;
+            }
+            MappedByteBuffer target;
+            int from;
+            int to;
+            long reached;
+            synchronized (this) {
+                if (position <= durable) {
+                    return;
+                }
+                checkWritable();
+                target = segment;
+                from = forcedOffset;
+                to = segment.position();
+                reached = written;
+            }
+            try {
+                target.force(from, to - from);
+            } catch (UncheckedIOException e) {
+                synchronized (this) {
+                    throw fail(e.getCause());
+                }
+            }
+            synchronized (this) {
+                // A roll meanwhile forced the whole segment and started a new one.
+                if (segment == target) {
+                    forcedOffset = to;
+                }
+                durable = Math.max(durable, reached);
+            }
+        }
+    }
+
+    public synchronized int getEventsSinceSnapshot() {
+        return eventsSinceSnapshot;
+    }
+
+    /**
+     * Starts a snapshot by moving appends to a new segment, and returns the
+     * cut to pass to {@link #writeSnapshot}, or -1 if a snapshot is already
+     * being written. The caller must capture its state without letting any
+     * event in between, e.g. under the lock it appends under.
+     */
+    public synchronized long beginSnapshot() throws IOException {
+        if (snapshotting) {
+            return -1;
+        }
+        checkWritable();
+        snapshotting = true;
+        roll();
+        eventsSinceSnapshot = 0;
+        return segmentNumber;
+    }
+
+    /**
+     * Writes {@code state}, as captured at {@code cut}, and then deletes the
+     * segments and snapshots it replaces. Appends carry on meanwhile.
+     */
+    public void writeSnapshot(long cut, State state) throws IOException {
+        Path temporary = directory.resolve("snapshot.tmp");
+        try {
+            try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                SnapshotWriter writer = new SnapshotWriter(new BufferedOutputStream(Channels.newOutputStream(out), 1 << 16));
+                try {
+                    state.writeTo(writer);
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                writer.finish();
+                out.force(true);
+            }
+            Files.move(temporary, snapshotPath(cut), StandardCopyOption.ATOMIC_MOVE);
+            for (long number : list("segment-", ".log")) {
+                if (number < cut) {
+                    Files.deleteIfExists(segmentPath(number));
+                }
+            }
+            for (long number : list("snapshot-", ".snap")) {
+                if (number < cut) {
+                    Files.deleteIfExists(snapshotPath(number));
+                }
+            }
+        } finally {
+            synchronized (this) {
+                snapshotting = false;
+            }
+        }
+    }
+
+    /** Forces what is left and closes the segment; closing again does nothing. */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (failure == null) {
+                segment.force();
+                durable = written;
+            }
+        } catch (UncheckedIOException e) {
+            failure = e.getCause();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Nothing more can reach the disk either way.
+        }
+        unlock();
+    }
+
+    /** Must hold the lock. */
+    private void checkWritable() throws IOException {
+        if (closed) {
+            throw new IOException("The journal is closed");
+        }
+        if (failure != null) {
+            throw new IOException("The journal failed earlier: " + failure.getMessage(), failure);
+        }
+    }
+
+    /** Records the first failure, which every later write then reports. Must hold the lock. */
+    private IOException fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+        }
+        return e;
+    }
+
+    private static final class SnapshotWriter implements Handler {
+        private final OutputStream out;
+        private final Encoder encoder = new Encoder();
+
+        SnapshotWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void roomSaved(int roomNumber, String type, double price) {
+            encoder.start(ROOM).putInt(roomNumber).putString(type).putDouble(price);
+            write();
+        }
+
+        @Override
+        public void booked(long bookingId, BookingRequest request) {
+            int[] roomNumbers = request.getRoomNumbers();
+            encoder.start(BOOK).putLong(bookingId).putLong(request.getCheckIn().toEpochDay())
+                    .putLong(request.isOpenEnded() ? OPEN_ENDED : request.getCheckOut().toEpochDay())
+                    .putShort(roomNumbers.length);
+            for (int roomNumber : roomNumbers) {
+                encoder.putInt(roomNumber);
+            }
+            encoder.putString(request.getName()).putString(request.getContact()).putString(request.getAddress())
+                    .putString(request.getEmail());
+            write();
+        }
+
+        @Override
+        public void cancelled(long bookingId) {
+            throw new IllegalStateException("A snapshot holds live bookings only");
+        }
+
+        void finish() throws IOException {
+            encoder.start(END);
+            try {
+                write();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            out.flush();
+        }
+
+        private void write() {
+            ByteBuffer record = encoder.finish();
+            try {
+                out.write(record.array(), 0, record.limit());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /** Builds one record at a time in a reusable buffer. */
+    private static final class Encoder {
+        private final CRC32 crc = new CRC32();
+        private ByteBuffer buffer = ByteBuffer.allocate(512);
+
+        Encoder start(byte kind) {
+            buffer.clear().position(HEADER);
+            buffer.put(kind);
+            return this;
+        }
+
+        Encoder putInt(int value) {
+            ensure(4).putInt(value);
+            return this;
+        }
+
+        Encoder putShort(int value) {
+            if (value > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("Too many rooms in one booking: " + value);
+            }
+            ensure(2).putShort((short) value);
+            return this;
+        }
+
+        Encoder putLong(long value) {
+            ensure(8).putLong(value);
+            return this;
+        }
+
+        Encoder putDouble(double value) {
+            ensure(8).putDouble(value);
+            return this;
+        }
+
+        Encoder putString(String value) {
+            if (value == null) {
+                ensure(2).putShort((short) 0xFFFF);
+                return this;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length >= 0xFFFF) {
+                throw new IllegalArgumentException("Journal field too long: " + bytes.length + " bytes");
+            }
+            ensure(2 + bytes.length).putShort((short) bytes.length).put(bytes);
+            return this;
+        }
+
+        /** Fills in the header and returns the record, ready to write from position 0. */
+        ByteBuffer finish() {
+            int length = buffer.position() - HEADER;
+            crc.reset();
+            crc.update(buffer.array(), HEADER, length);
+            buffer.putInt(0, length).putInt(4, (int) crc.getValue());
+            buffer.flip();
+            return buffer;
+        }
+
+        private ByteBuffer ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Bookings in id order, kept in fixed-size chunks. Appending writes into the
+ * last chunk and takes constant time. Cancelling leaves a tombstone in
+ * place; once at least half of a full chunk is tombstones, a background
+ * task packs neighbouring chunks together so memory follows the live
+ * bookings rather than the history. Lookups by id binary-search the chunks,
+ * and bookings are also indexed by room and by customer name.
+ */
+public class BookingLedger implements AutoCloseable {
+    static final int CHUNK_SIZE = 4096;
+
+    private static final class Chunk {
+        private final long[] ids;
+        private final BookingRecord[] records;
+        private int count;
+        private int live;
+
+        Chunk(int capacity) {
+            ids = new long[capacity];
+            records = new BookingRecord[capacity];
+        }
+
+        boolean isFull() {
+            return count == ids.length;
+        }
+    }
+
+    /** Booking ids in ascending order. */
+    private static final class IdList {
+        private long[] ids = new long[4];
+        private int size;
+
+        void add(long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        void remove(long id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at >= 0) {
+                System.arraycopy(ids, at + 1, ids, at, --size - at);
+            }
+        }
+    }
+
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final Map<Integer, IdList> byRoom = new HashMap<>();
+    private final Map<String, IdList> byCustomer = new HashMap<>();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ledger-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private long nextId = 1;
+    private int size;
+    private boolean compactionPending;
+
+    /** Records a new booking under the next id and returns it. */
+    public synchronized BookingRecord add(String name, String contact, String address, String email, int[] roomNumbers) {
+        BookingRecord record = new BookingRecord(nextId, name, contact, address, email, roomNumbers.clone());
+        add(record);
+        return record;
+    }
+
+    /**
+     * Records a booking that already has an id, e.g. one replayed from a
+     * journal. Ids must arrive in ascending order.
+     */
+    public synchronized void add(BookingRecord record) {
+        if (record.getId() < nextId) {
+            throw new IllegalArgumentException("Booking " + record.getId() + " is not newer than booking " + (nextId - 1));
+        }
+        Chunk tail = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        if (tail == null || tail.isFull()) {
+            tail = new Chunk(CHUNK_SIZE);
+            chunks.add(tail);
+        }
+        tail.ids[tail.count] = record.getId();
+        tail.records[tail.count++] = record;
+        tail.live++;
+        size++;
+        nextId = record.getId() + 1;
+        for (int roomNumber : record.getRoomNumbers()) {
+            byRoom.computeIfAbsent(roomNumber, n -> new IdList()).add(record.getId());
+        }
+        byCustomer.computeIfAbsent(key(record.getName()), n -> new IdList()).add(record.getId());
+    }
+
+    /** Returns the live booking with that id, or {@code null}. */
+    public synchronized BookingRecord get(long id) {
+        Chunk chunk = chunkOf(id);
+        if (chunk == null) {
+            return null;
+        }
+        int at = Arrays.binarySearch(chunk.ids, 0, chunk.count, id);
+        return at < 0 ? null : chunk.records[at];
+    }
+
+    /**
+     * Cancels a booking, leaving a tombstone for the compactor.
+     *
+     * @return the cancelled booking, or {@code null} if there was no live booking with that id
+     */
+    public synchronized BookingRecord cancel(long id) {
+        Chunk chunk = chunkOf(id);
+        if (chunk == null) {
+            return null;
+        }
+        int at = Arrays.binarySearch(chunk.ids, 0, chunk.count, id);
+        if (at < 0 || chunk.records[at] == null) {
+            return null;
+        }
+        BookingRecord record = chunk.records[at];
+        chunk.records[at] = null;
+        chunk.live--;
+        size--;
+        for (int roomNumber : record.getRoomNumbers()) {
+            unindex(byRoom, roomNumber, id);
+        }
+        unindex(byCustomer, key(record.getName()), id);
+        if (chunk.isFull() && chunk.live * 2 <= chunk.count && !compactionPending) {
+            compactionPending = true;
+            compactor.execute(this::compact);
+        }
+        return record;
+    }
+
+    /** Live bookings that include {@code roomNumber}, oldest first. */
+    public synchronized List<BookingRecord> byRoom(int roomNumber) {
+        return records(byRoom.get(roomNumber));
+    }
+
+    /** Live bookings whose customer name matches {@code name}, ignoring case, oldest first. */
+    public synchronized List<BookingRecord> byCustomer(String name) {
+        return records(byCustomer.get(key(name)));
+    }
+
+    /** Passes every live booking to {@code consumer}, oldest first. */
+    public void forEach(Consumer<BookingRecord> consumer) {
+        List<BookingRecord> live = new ArrayList<>();
+        synchronized (this) {
+            for (Chunk chunk : chunks) {
+                for (int i = 0; i < chunk.count; i++) {
+                    if (chunk.records[i] != null) {
+                        live.add(chunk.records[i]);
+                    }
+                }
+            }
+        }
+        live.forEach(consumer);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized long getNextId() {
+        return nextId;
+    }
+
+    /** Number of chunks, live or not; exposed so callers can watch compaction. */
+    synchronized int chunkCount() {
+        return chunks.size();
+    }
+
+    @Override
+    public void close() {
+        compactor.shutdown();
+    }
+
+    /**
+     * Packs runs of neighbouring chunks, other than the one still being
+     * appended to, into chunks holding only their live bookings.
+     */
+    private synchronized void compact() {
+        compactionPending = false;
+        List<Chunk> packed = new ArrayList<>(chunks.size());
+        int last = chunks.size() - 1;
+        int i = 0;
+        while (i < last) {
+            int live = 0;
+            int end = i;
+            while (end < last && live + chunks.get(end).live <= CHUNK_SIZE) {
+                live += chunks.get(end++).live;
+            }
+            if (end == i) {
+                end = i + 1;
+                live = chunks.get(i).live;
+            }
+            if (end - i == 1 && chunks.get(i).live == chunks.get(i).count) {
+                packed.add(chunks.get(i));
+            } else if (live > 0) {
+                Chunk merged = new Chunk(live);
+                for (int c = i; c < end; c++) {
+                    Chunk chunk = chunks.get(c);
+                    for (int r = 0; r < chunk.count; r++) {
+                        if (chunk.records[r] != null) {
+                            merged.ids[merged.count] = chunk.ids[r];
+                            merged.records[merged.count++] = chunk.records[r];
+                        }
+                    }
+                }
+                merged.live = live;
+                packed.add(merged);
+            }
+            i = end;
+        }
+        if (last >= 0) {
+            packed.add(chunks.get(last));
+        }
+        chunks.clear();
+        chunks.addAll(packed);
+    }
+
+    private List<BookingRecord> records(IdList ids) {
+        List<BookingRecord> result = new ArrayList<>();
+        if (ids != null) {
+            for (int i = 0; i < ids.size; i++) {
+                result.add(get(ids.ids[i]));
+            }
+        }
+        return result;
+    }
+
+    private Chunk chunkOf(long id) {
+        int low = 0;
+        int high = chunks.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            Chunk chunk = chunks.get(mid);
+            if (chunk.count > 0 && id < chunk.ids[0]) {
+                high = mid - 1;
+            } else if (chunk.count == 0 || id > chunk.ids[chunk.count - 1]) {
+                low = mid + 1;
+            } else {
+                return chunk;
+            }
+        }
+        return null;
+    }
+
+    private static <K> void unindex(Map<K, IdList> index, K key, long id) {
+        IdList ids = index.get(key);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.size == 0) {
+                index.remove(key);
+            }
+        }
+    }
+
+    private static String key(String name) {
+        return name == null ? "" : name.trim().toLowerCase(Locale.ROOT);
+    }
+}
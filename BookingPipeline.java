@@ -0,0 +1,287 @@
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind pipeline for group bookings and bulk imports. Submitted
+ * bookings are coalesced into one transaction per batch: a single version
+ * read, one JDBC batch of conditional room updates and one batch of booking
+ * inserts. A batch flushes when it reaches {@code maxBatchSize} or when its
+ * oldest booking has waited {@code maxDelayMillis}.
+ *
+ * If any room claim in a batch loses a race, the batch is rolled back and its
+ * bookings are replayed one by one through {@link BookingDao#book}. Every
+ * submitted future completes: a batch that fails unexpectedly fails all of
+ * its bookings, and bookings still queued when the pipeline closes fail
+ * with an {@link SQLException}.
+ */
+public class BookingPipeline implements AutoCloseable {
+    public interface BatchListener {
+        void onBatch(int bookings, int rooms, long elapsedNanos, boolean fellBack);
+    }
+
+    private static final Pending SHUTDOWN = new Pending(null);
+
+    private final ConnectionPool pool;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final Object lifecycle = new Object();
+    private volatile BatchListener listener;
+    private boolean closed;
+
+    private long batchCount;
+    private long bookingCount;
+    private long fallbackCount;
+    private long totalBatchNanos;
+    private long maxBatchNanos;
+
+    public BookingPipeline(ConnectionPool pool, int maxBatchSize, long maxDelayMillis) {
+        this.pool = pool;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.writer = new Thread(this::run, "booking-pipeline");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public void setBatchListener(BatchListener listener) {
+        this.listener = listener;
+    }
+
+    /** @throws IllegalStateException if the pipeline is closed or its writer has stopped */
+    public CompletableFuture<Long> submit(BookingRequest request) {
+        Pending pending = new Pending(request);
+        synchronized (lifecycle) {
+            if (closed) {
+                throw new IllegalStateException("Booking pipeline is closed");
+            }
+            queue.add(pending);
+        }
+        return pending.result;
+    }
+
+    @Override
+    public void close() {
+        synchronized (lifecycle) {
+            if (!closed) {
+                closed = true;
+                queue.add(SHUTDOWN);
+            }
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            writeUntilShutdown();
+        } finally {
+            // Nothing can be queued after this, so everything left is failed here.
+            synchronized (lifecycle) {
+                closed = true;
+            }
+            for (Pending pending; (pending = queue.poll()) != null; ) {
+                if (pending != SHUTDOWN) {
+                    pending.result.completeExceptionally(new SQLException("Booking pipeline is closed"));
+                }
+            }
+        }
+    }
+
+    private void writeUntilShutdown() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        boolean running = true;
+        while (running) {
+            try {
+                Pending first = queue.take();
+                if (first == SHUTDOWN) {
+                    break;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    if (next == SHUTDOWN) {
+                        running = false;
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                try {
+                    writeBatch(batch);
+                } catch (Throwable e) {
+                    // Bookings already completed keep their result; the rest fail with the batch.
+                    for (Pending pending : batch) {
+                        pending.result.completeExceptionally(e);
+                    }
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<Pending> batch) {
+        long start = System.nanoTime();
+        List<Pending> claimable = new ArrayList<>(batch.size());
+        List<Pending> deferred = new ArrayList<>();
+        // Only stays that overlap another in the batch on the same room wait; the same room on other dates claims once.
+        Map<Integer, List<BookingRequest>> claimedInBatch = new HashMap<>();
+        for (Pending pending : batch) {
+            if (overlapsClaimed(pending.request, claimedInBatch)) {
+                deferred.add(pending);
+            } else {
+                for (int roomNumber : pending.request.getRoomNumbers()) {
+                    claimedInBatch.computeIfAbsent(roomNumber, k -> new ArrayList<>()).add(pending.request);
+                }
+                claimable.add(pending);
+            }
+        }
+
+        int[] roomNumbers = claimedInBatch.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+        boolean fellBack = false;
+        try {
+            if (!writeClaimable(claimable, roomNumbers)) {
+                fellBack = true;
+                deferred.addAll(0, claimable);
+            }
+        } catch (SQLException e) {
+            for (Pending pending : claimable) {
+                pending.result.completeExceptionally(e);
+            }
+        }
+        for (Pending pending : deferred) {
+            try {
+                pending.result.complete(BookingDao.book(pool, pending.request));
+            } catch (SQLException | RoomUnavailableException e) {
+                pending.result.completeExceptionally(e);
+            }
+        }
+        record(batch.size(), roomNumbers.length, System.nanoTime() - start, fellBack);
+    }
+
+    private static boolean overlapsClaimed(BookingRequest request, Map<Integer, List<BookingRequest>> claimedInBatch) {
+        for (int roomNumber : request.getRoomNumbers()) {
+            for (BookingRequest other : claimedInBatch.getOrDefault(roomNumber, Collections.emptyList())) {
+                if (request.overlaps(other.getCheckIn(), other.getCheckOut())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean writeClaimable(List<Pending> claimable, int[] roomNumbers) throws SQLException {
+        if (claimable.isEmpty()) {
+            return true;
+        }
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            int[] readVersions = new int[roomNumbers.length];
+            reject(claimable, BookingDao.readVersions(connection, roomNumbers, readVersions));
+            Map<Integer, List<LocalDate[]>> stays = BookingDao.activeStays(connection, roomNumbers);
+            for (int i = claimable.size() - 1; i >= 0; i--) {
+                int[] taken = BookingDao.conflicts(claimable.get(i).request, stays);
+                if (taken.length > 0) {
+                    claimable.remove(i).result.completeExceptionally(new RoomUnavailableException(taken));
+                }
+            }
+            if (claimable.isEmpty()) {
+                connection.rollback();
+                return true;
+            }
+
+            int[] claimed = claimable.stream().flatMapToInt(p -> Arrays.stream(p.request.getRoomNumbers())).distinct().sorted().toArray();
+            int[] versions = new int[claimed.length];
+            boolean[] holds = new boolean[claimed.length];
+            for (Pending pending : claimable) {
+                for (int roomNumber : pending.request.getRoomNumbers()) {
+                    int index = Arrays.binarySearch(claimed, roomNumber);
+                    versions[index] = readVersions[Arrays.binarySearch(roomNumbers, roomNumber)];
+                    holds[index] |= pending.request.isOpenEnded();
+                }
+            }
+            if (!BookingDao.claimRooms(connection, claimed, versions, holds)) {
+                connection.rollback();
+                return false;
+            }
+            List<BookingRequest> requests = new ArrayList<>(claimable.size());
+            for (Pending pending : claimable) {
+                requests.add(pending.request);
+            }
+            long[] ids = BookingDao.insertBookings(connection, requests);
+            connection.commit();
+            for (int i = 0; i < ids.length; i++) {
+                claimable.get(i).result.complete(ids[i]);
+            }
+            return true;
+        }
+    }
+
+    private static void reject(List<Pending> claimable, int[] unavailable) {
+        if (unavailable.length == 0) {
+            return;
+        }
+        for (int i = claimable.size() - 1; i >= 0; i--) {
+            int[] requested = claimable.get(i).request.getRoomNumbers();
+            int[] taken = Arrays.stream(requested).filter(n -> Arrays.binarySearch(unavailable, n) >= 0).toArray();
+            if (taken.length > 0) {
+                claimable.remove(i).result.completeExceptionally(new RoomUnavailableException(taken));
+            }
+        }
+    }
+
+    private void record(int bookings, int rooms, long elapsedNanos, boolean fellBack) {
+        synchronized (this) {
+            batchCount++;
+            bookingCount += bookings;
+            if (fellBack) {
+                fallbackCount++;
+            }
+            totalBatchNanos += elapsedNanos;
+            maxBatchNanos = Math.max(maxBatchNanos, elapsedNanos);
+        }
+        BatchListener current = listener;
+        if (current != null) {
+            current.onBatch(bookings, rooms, elapsedNanos, fellBack);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("BookingPipeline[batches=%d, bookings=%d, fallbacks=%d, avgBatch=%.2fms, maxBatch=%.2fms]",
+                batchCount, bookingCount, fallbackCount,
+                batchCount == 0 ? 0 : totalBatchNanos / 1e6 / batchCount, maxBatchNanos / 1e6);
+    }
+
+    private static final class Pending {
+        private final BookingRequest request;
+        private final CompletableFuture<Long> result = new CompletableFuture<>();
+
+        Pending(BookingRequest request) {
+            this.request = request;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+public class BookingRecord {
+    private final long id;
+    private final String name;
+    private final String contact;
+    private final String address;
+    private final String email;
+    private final int[] roomNumbers;
+
+    public BookingRecord(long id, String name, String contact, String address, String email, int[] roomNumbers) {
+        this.id = id;
+        this.name = name;
+        this.contact = contact;
+        this.address = address;
+        this.email = email;
+        this.roomNumbers = roomNumbers;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getContact() {
+        return contact;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public int[] getRoomNumbers() {
+        return roomNumbers.clone();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder details = new StringBuilder("Booking #").append(id)
+                .append(" - Customer: ").append(name).append(" (").append(contact).append(", ").append(address).append(", ").append(email)
+                .append(")\nRooms: ");
+        for (int roomNumber : roomNumbers) {
+            details.append(roomNumber).append(" ");
+        }
+        return details.toString();
+    }
+}
@@ -0,0 +1,58 @@
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/** Where bookings live; see {@link RoomRepository} for the implementations. */
+public interface BookingRepository extends AutoCloseable {
+    /**
+     * Books every room of the request for its stay, or none of them.
+     *
+     * @return the new booking id
+     * @throws RoomUnavailableException if a room is missing, held or already booked for an overlapping night
+     */
+    long book(BookingRequest request) throws SQLException, RoomUnavailableException;
+
+    /**
+     * Books each request as {@link #book} would, in order, for bulk loads. A
+     * request that cannot be booked does not stop the others: its id is -1
+     * and the reason is put in {@code failures} at the same index. Stores
+     * override this to save a batch in fewer round trips than one each.
+     *
+     * @throws SQLException if the store failed in a way that may have lost
+     *                      bookings reported as saved
+     */
+    default long[] bookAll(List<BookingRequest> requests, Exception[] failures) throws SQLException {
+        long[] ids = new long[requests.size()];
+        for (int i = 0; i < ids.length; i++) {
+            try {
+                ids[i] = book(requests.get(i));
+            } catch (SQLException | RoomUnavailableException | IllegalArgumentException e) {
+                ids[i] = -1;
+                failures[i] = e;
+            }
+        }
+        return ids;
+    }
+
+    /** @return {@code false} if there is no booking with that id */
+    boolean cancel(long bookingId) throws SQLException;
+
+    /** Bookings whose guest name has a word starting with {@code query}, or whose contact or email does, oldest first. */
+    List<BookingRecord> search(String query, int limit) throws SQLException;
+
+    /** Passes every live booking to {@code consumer}, oldest first. */
+    void forEachBooking(Consumer<BookingRecord> consumer) throws SQLException;
+
+    /**
+     * Passes every booking with its stay to {@code consumer}, oldest first,
+     * without holding them all in memory. Cancelled bookings are included,
+     * with when they were cancelled, by stores that keep them.
+     */
+    void forEachBookingRow(BookingDao.BookingRow consumer) throws SQLException;
+
+    /** Passes every stay that has not ended yet to {@code consumer}. */
+    void forEachActiveStay(BookingDao.StayConsumer consumer) throws SQLException;
+
+    @Override
+    void close();
+}
@@ -0,0 +1,75 @@
+import java.time.LocalDate;
+import java.util.Arrays;
+
+public class BookingRequest {
+    private final int[] roomNumbers;
+    private final String name;
+    private final String contact;
+    private final String address;
+    private final String email;
+    private final LocalDate checkIn;
+    private final LocalDate checkOut;
+
+    public BookingRequest(int[] roomNumbers, String name, String contact, String address, String email) {
+        this(roomNumbers, name, contact, address, email, LocalDate.now(), null);
+    }
+
+    /**
+     * @param checkOut the departure date (exclusive), or {@code null} for a
+     *                 stay that lasts until the booking is cancelled
+     */
+    public BookingRequest(int[] roomNumbers, String name, String contact, String address, String email,
+                          LocalDate checkIn, LocalDate checkOut) {
+        if (checkOut != null && !checkOut.isAfter(checkIn)) {
+            throw new IllegalArgumentException("Check-out " + checkOut + " must be after check-in " + checkIn);
+        }
+        this.roomNumbers = Arrays.stream(roomNumbers).distinct().sorted().toArray();
+        this.name = name;
+        this.contact = contact;
+        this.address = address;
+        this.email = email;
+        this.checkIn = checkIn;
+        this.checkOut = checkOut;
+    }
+
+    public int[] getRoomNumbers() {
+        return roomNumbers.clone();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getContact() {
+        return contact;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public LocalDate getCheckIn() {
+        return checkIn;
+    }
+
+    public LocalDate getCheckOut() {
+        return checkOut;
+    }
+
+    public boolean isOpenEnded() {
+        return checkOut == null;
+    }
+
+    public boolean overlaps(LocalDate from, LocalDate to) {
+        return (to == null || checkIn.isBefore(to)) && (checkOut == null || checkOut.isAfter(from));
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + Arrays.toString(roomNumbers) + " " + checkIn + ".." + (checkOut == null ? "" : checkOut);
+    }
+}
@@ -0,0 +1,75 @@
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Booking operations without any console or Swing dependency, so the desk
+ * front ends, the HTTP endpoint and load tests all drive the same logic.
+ * Guest fields are validated by the implementation; invalid input is
+ * rejected with an {@link IllegalArgumentException}.
+ */
+public interface BookingService extends AutoCloseable {
+    final class RoomInfo {
+        private final int roomNumber;
+        private final String type;
+        private final double price;
+        private final boolean available;
+
+        public RoomInfo(int roomNumber, String type, double price, boolean available) {
+            this.roomNumber = roomNumber;
+            this.type = type;
+            this.price = price;
+            this.available = available;
+        }
+
+        public int getRoomNumber() {
+            return roomNumber;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public double getPrice() {
+            return price;
+        }
+
+        /** {@code false} while an open-ended stay holds the room. */
+        public boolean isAvailable() {
+            return available;
+        }
+
+        @Override
+        public String toString() {
+            return "Room " + roomNumber + " (" + type + ") - $" + price + " - " + (available ? "Available" : "Booked");
+        }
+    }
+
+    /** Books every room of the request for its stay and returns the booking id. */
+    long book(BookingRequest request) throws SQLException, RoomUnavailableException;
+
+    /** @return {@code false} if there is no booking with that id */
+    boolean cancel(long bookingId) throws SQLException;
+
+    /** Bookings whose guest name, contact or email matches {@code query} as a prefix. */
+    List<BookingRecord> search(String query) throws SQLException;
+
+    /**
+     * Rooms of {@code type}, or of any type when {@code null}, that are free
+     * for every night from {@code from} up to the check-out date {@code to}.
+     */
+    List<RoomInfo> availableRooms(String type, LocalDate from, LocalDate to) throws SQLException;
+
+    List<RoomInfo> allRooms() throws SQLException;
+
+    /**
+     * The price of a stay in {@code roomNumbers} at current rates; a
+     * {@code null} check-out is priced as one night.
+     *
+     * @throws IllegalArgumentException if a room does not exist
+     */
+    double quote(int[] roomNumbers, LocalDate from, LocalDate to) throws SQLException;
+
+    @Override
+    void close();
+}
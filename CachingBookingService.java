@@ -0,0 +1,321 @@
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * {@link BookingService} over a {@link RoomRepository} and
+ * {@link BookingRepository}, which are borrowed, not owned: whoever opened
+ * them closes them. Writes go straight to the repositories.
+ * Availability is answered from an in-memory inventory and calendar that are
+ * loaded on first use and kept current from the repository's room changes,
+ * so a front end that never lists availability never loads the room table.
+ * The calendar covers {@value AvailabilityCalendar#HORIZON_DAYS} days from
+ * the day it was loaded and is reloaded on first use each later day; stays
+ * it does not cover are checked against the stored stays instead.
+ * Quotes come from a {@link RateEngine} kept alongside the calendar, with
+ * rules read from the file named by {@value RateEngine#RULES_PATH}
+ * ({@code rates.txt} by default). Latencies, outcomes and available rooms
+ * per type are reported to {@link HotelMetrics}.
+ */
+public class CachingBookingService implements BookingService {
+    private static final int SEARCH_LIMIT = 100;
+    private static final HotelMetrics METRICS = HotelMetrics.get();
+    private static final LatencyHistogram BOOK_LATENCY = METRICS.histogram(HotelMetrics.BOOK_SECONDS);
+    private static final LatencyHistogram CANCEL_LATENCY = METRICS.histogram(HotelMetrics.CANCEL_SECONDS);
+    private static final LatencyHistogram SEARCH_LATENCY = METRICS.histogram(HotelMetrics.SEARCH_SECONDS);
+    private static final LatencyHistogram LOAD_LATENCY = METRICS.histogram(HotelMetrics.ROOM_LOAD_SECONDS);
+    private static final LatencyHistogram CHANGES_LATENCY = METRICS.histogram(HotelMetrics.ROOM_CHANGES_SECONDS);
+    private static final HotelMetrics.Counter BOOKINGS = METRICS.counter(HotelMetrics.BOOKINGS);
+    private static final HotelMetrics.Counter FAILURES = METRICS.counter(HotelMetrics.BOOKING_FAILURES);
+    private static final HotelMetrics.Counter CONFLICTS = METRICS.counter(HotelMetrics.BOOKING_CONFLICTS);
+    private static final HotelMetrics.Counter CANCELLATIONS = METRICS.counter(HotelMetrics.CANCELLATIONS);
+    private static final HotelMetrics.Counter DB_ERRORS = METRICS.counter(HotelMetrics.DB_ERRORS);
+
+    private final RoomRepository roomStore;
+    private final BookingRepository bookingStore;
+    private final Validators.Ruleset rules;
+    private final List<RateEngine.Rule> rateRules;
+    private final Supplier<Map<String, ? extends Number>> roomsAvailable = this::availableByType;
+    private volatile Cache cache;
+    private boolean subscribed;
+
+    /**
+     * One load of rooms, stays and rates. Room changes update its parts in
+     * place, each under its own lock; a reload replaces the whole of it, so
+     * a reader that takes {@link #cache} once never mixes two loads.
+     */
+    private static final class Cache {
+        final RoomStore rooms;
+        final AvailabilityCalendar calendar;
+        final RateEngine rates;
+        final long expiresAtMillis;
+
+        Cache(RoomStore rooms, AvailabilityCalendar calendar, RateEngine rates) {
+            this.rooms = rooms;
+            this.calendar = calendar;
+            this.rates = rates;
+            this.expiresAtMillis = calendar.getHorizonStart().plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+
+        /** Whether the calendar still starts today; its horizon does not move on its own. */
+        boolean isCurrent() {
+            return System.currentTimeMillis() < expiresAtMillis;
+        }
+    }
+
+    public CachingBookingService(RoomRepository roomStore, BookingRepository bookingStore, Validators.Ruleset rules) {
+        this.roomStore = roomStore;
+        this.bookingStore = bookingStore;
+        this.rules = rules;
+        this.rateRules = RateEngine.loadRules(Paths.get(System.getProperty(RateEngine.RULES_PATH, "rates.txt")));
+        METRICS.gauge(HotelMetrics.ROOMS_AVAILABLE, "Rooms not held by an open-ended stay, by type", "type", roomsAvailable);
+    }
+
+    @Override
+    public long book(BookingRequest request) throws SQLException, RoomUnavailableException {
+        long start = System.nanoTime();
+        boolean saved = false;
+        try {
+            EnumSet<Validators.Field> invalid = Validators.validate(rules,
+                    request.getName(), request.getContact(), request.getAddress(), request.getEmail());
+            if (!invalid.isEmpty()) {
+                throw new IllegalArgumentException("Invalid " + invalid.toString().toLowerCase(Locale.ROOT));
+            }
+            long bookingId = bookingStore.book(request);
+            saved = true;
+            return bookingId;
+        } catch (RoomUnavailableException e) {
+            CONFLICTS.increment();
+            throw e;
+        } catch (SQLException e) {
+            DB_ERRORS.increment();
+            throw e;
+        } finally {
+            (saved ? BOOKINGS : FAILURES).increment();
+            BOOK_LATENCY.recordSince(start);
+        }
+    }
+
+    @Override
+    public boolean cancel(long bookingId) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            boolean cancelled = bookingStore.cancel(bookingId);
+            if (cancelled) {
+                CANCELLATIONS.increment();
+            }
+            return cancelled;
+        } catch (SQLException e) {
+            DB_ERRORS.increment();
+            throw e;
+        } finally {
+            CANCEL_LATENCY.recordSince(start);
+        }
+    }
+
+    @Override
+    public List<BookingRecord> search(String query) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return bookingStore.search(query, SEARCH_LIMIT);
+        } catch (SQLException e) {
+            DB_ERRORS.increment();
+            throw e;
+        } finally {
+            SEARCH_LATENCY.recordSince(start);
+        }
+    }
+
+    @Override
+    public List<RoomInfo> availableRooms(String type, LocalDate from, LocalDate to) throws SQLException {
+        Cache cache = load();
+        if (!cache.calendar.covers(from, to)) {
+            return availableFromStays(cache, type, from, to);
+        }
+        return cache.rooms.available(type, cache.calendar, from, to);
+    }
+
+    /**
+     * Answers a stay outside the calendar's horizon from the stored stays:
+     * the rooms not held open-ended, less those with a stay overlapping it.
+     */
+    private List<RoomInfo> availableFromStays(Cache cache, String type, LocalDate from, LocalDate to) throws SQLException {
+        List<RoomInfo> rooms = type == null ? cache.rooms.available() : cache.rooms.available(type);
+        Set<Integer> taken = new HashSet<>();
+        try {
+            bookingStore.forEachActiveStay((roomNumber, checkIn, checkOut) -> {
+                if ((checkOut == null || from.isBefore(checkOut)) && (to == null || checkIn.isBefore(to))) {
+                    taken.add(roomNumber);
+                }
+            });
+        } catch (SQLException e) {
+            DB_ERRORS.increment();
+            throw e;
+        }
+        rooms.removeIf(room -> taken.contains(room.getRoomNumber()));
+        return rooms;
+    }
+
+    @Override
+    public List<RoomInfo> allRooms() throws SQLException {
+        return load().rooms.all();
+    }
+
+    @Override
+    public double quote(int[] roomNumbers, LocalDate from, LocalDate to) throws SQLException {
+        Cache cache = load();
+        List<RoomInfo> quoted = new ArrayList<>(roomNumbers.length);
+        for (int roomNumber : roomNumbers) {
+            RoomInfo room = cache.rooms.get(roomNumber);
+            if (room == null) {
+                throw new IllegalArgumentException("Unknown room " + roomNumber);
+            }
+            quoted.add(room);
+        }
+        return cache.rates.quote(quoted, from, to);
+    }
+
+    /** Available rooms per type, or none until the rooms are loaded. */
+    private Map<String, Integer> availableByType() {
+        Cache cache = this.cache;
+        Map<String, Integer> counts = new TreeMap<>();
+        if (cache != null) {
+            for (String type : cache.rooms.types()) {
+                counts.put(type, cache.rooms.availableCount(type));
+            }
+        }
+        return counts;
+    }
+
+    /** Stops reporting this service's available rooms; the repositories are left open for their owner. */
+    @Override
+    public void close() {
+        METRICS.removeGauge(HotelMetrics.ROOMS_AVAILABLE, roomsAvailable);
+    }
+
+    /**
+     * The loaded rooms and stays, subscribing to room changes and loading
+     * them on first use, and again on first use each day.
+     */
+    private Cache load() throws SQLException {
+        Cache current = cache;
+        return current != null && current.isCurrent() ? current : loadOnce();
+    }
+
+    private synchronized Cache loadOnce() throws SQLException {
+        if (cache == null || !cache.isCurrent()) {
+            if (!subscribed) {
+                roomStore.subscribe(new RoomChangeFeed.Listener() {
+                    @Override
+                    public void onChanges(List<RoomChangeFeed.Change> batch) {
+                        applyChanges(batch);
+                    }
+
+                    @Override
+                    public void onReset() {
+                        reloadQuietly();
+                    }
+                });
+                subscribed = true;
+            }
+            reload();
+        }
+        return cache;
+    }
+
+    /**
+     * Loads rooms and active stays into a fresh inventory, calendar and rate
+     * engine, then swaps them in. Runs under the same lock as
+     * {@link #applyChanges}, so a change delivered during a load is applied
+     * to the new cache afterwards rather than to the one being replaced.
+     */
+    private synchronized void reload() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            loadRoomsAndStays();
+        } catch (SQLException e) {
+            DB_ERRORS.increment();
+            throw e;
+        } finally {
+            LOAD_LATENCY.recordSince(start);
+        }
+    }
+
+    private void loadRoomsAndStays() throws SQLException {
+        RoomStore loadedRooms = new RoomStore();
+        AvailabilityCalendar loadedCalendar = new AvailabilityCalendar(LocalDate.now());
+        RateEngine loadedRates = new RateEngine(loadedCalendar.getHorizonStart());
+        roomStore.forEachRoom((roomNumber, type, price, available, version) -> {
+            loadedRooms.add(roomNumber, type, price, available, version);
+            loadedRates.addType(type, price);
+        });
+        loadedRates.addRules(rateRules);
+        loadedRates.setRoomCount(loadedRooms.size());
+        bookingStore.forEachActiveStay((roomNumber, checkIn, checkOut) -> {
+            int slot = loadedRooms.slot(roomNumber);
+            if (slot >= 0) {
+                loadedCalendar.occupy(slot, checkIn, checkOut);
+                loadedRates.occupy(checkIn, checkOut, 1);
+            }
+        });
+        cache = new Cache(loadedRooms, loadedCalendar, loadedRates);
+    }
+
+    private void reloadQuietly() {
+        try {
+            reload();
+        } catch (SQLException e) {
+            // The cache stays as it was until the next reset or room update reloads it.
+        }
+    }
+
+    /**
+     * Applies room changes. A change only touches the calendar if it is
+     * newer than the room's known version, so changes that arrive out of
+     * order or repeat the loaded state are skipped. Rooms added or repriced
+     * elsewhere are rare enough to simply reload for.
+     */
+    private synchronized void applyChanges(List<RoomChangeFeed.Change> changes) {
+        long start = System.nanoTime();
+        try {
+            applyChangeBatch(changes);
+        } finally {
+            CHANGES_LATENCY.recordSince(start);
+        }
+    }
+
+    private void applyChangeBatch(List<RoomChangeFeed.Change> changes) {
+        Cache cache = this.cache;
+        if (cache == null) {
+            // Not loaded yet, or the last load failed: the next load reads these changes from the tables.
+            return;
+        }
+        for (RoomChangeFeed.Change change : changes) {
+            if (RoomChangeFeed.UPDATE.equals(change.getKind())) {
+                reloadQuietly();
+                return;
+            }
+            if (!cache.rooms.apply(change.getRoomNumber(), change.isAvailable(), change.getVersion()) || change.getCheckIn() == null) {
+                continue;
+            }
+            int slot = cache.rooms.slot(change.getRoomNumber());
+            if (RoomChangeFeed.CANCEL.equals(change.getKind())) {
+                cache.calendar.release(slot, change.getCheckIn(), change.getCheckOut());
+                cache.rates.release(change.getCheckIn(), change.getCheckOut(), 1);
+            } else if (RoomChangeFeed.BOOK.equals(change.getKind())) {
+                cache.calendar.occupy(slot, change.getCheckIn(), change.getCheckOut());
+                cache.rates.occupy(change.getCheckIn(), change.getCheckOut(), 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,394 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded JDBC connection pool shared by the console and Swing front ends.
+ * Connections are validated on borrow, evicted when idle for too long and
+ * retired once they exceed their maximum lifetime.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final long maxWaitNanos;
+    private final long idleTimeoutNanos;
+    private final long maxLifetimeNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final ArrayDeque<PooledConnection> idle = new ArrayDeque<>();
+    private final ScheduledExecutorService evictor;
+    private volatile StatementProfiler profiler;
+    private int total;
+    private boolean closed;
+
+    private long borrowCount;
+    private long totalWaitNanos;
+    private long maxObservedWaitNanos;
+    private long timeoutCount;
+    private long validationFailures;
+    private long evictedCount;
+
+    public ConnectionPool(String url, String user, String password, int maxSize) throws SQLException {
+        this(url, user, password, maxSize, 1, 30_000, 600_000, 1_800_000);
+    }
+
+    public ConnectionPool(String url, String user, String password, int maxSize, int minIdle,
+                          long maxWaitMillis, long idleTimeoutMillis, long maxLifetimeMillis) throws SQLException {
+        if (maxSize < 1 || minIdle > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: max=" + maxSize + ", minIdle=" + minIdle);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.maxLifetimeNanos = TimeUnit.MILLISECONDS.toNanos(maxLifetimeMillis);
+
+        try {
+            for (int i = 0; i < minIdle; i++) {
+                idle.push(open());
+                total++;
+            }
+        } catch (SQLException e) {
+            for (PooledConnection pooled : idle) {
+                closeQuietly(pooled.physical);
+            }
+            throw e;
+        }
+
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1_000, idleTimeoutMillis / 4);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        while (true) {
+            PooledConnection pooled = reserve(start);
+            if (pooled == null) {
+                try {
+                    pooled = open();
+                } catch (SQLException e) {
+                    releaseSlot();
+                    throw e;
+                }
+            } else if (pooled.isExpired(System.nanoTime()) || !isValid(pooled)) {
+                destroy(pooled);
+                continue;
+            }
+            recordWait(System.nanoTime() - start);
+            StatementProfiler profiler = this.profiler;
+            return profiler == null ? pooled.lease() : profiler.wrap(pooled.lease());
+        }
+    }
+
+    private PooledConnection reserve(long start) throws SQLException {
+        lock.lock();
+        try {
+            while (true) {
+                if (closed) {
+                    throw new SQLException("Connection pool is closed");
+                }
+                PooledConnection pooled = idle.poll();
+                if (pooled != null) {
+                    return pooled;
+                }
+                if (total < maxSize) {
+                    total++;
+                    return null;
+                }
+                long remaining = maxWaitNanos - (System.nanoTime() - start);
+                if (remaining <= 0) {
+                    timeoutCount++;
+                    throw new SQLTimeoutException("Timed out waiting " + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos)
+                            + " ms for a database connection (" + total + " in use)");
+                }
+                available.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        try {
+            if (pooled.physical.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                return true;
+            }
+        } catch (SQLException ignored) {
+        }
+        lock.lock();
+        try {
+            validationFailures++;
+        } finally {
+            lock.unlock();
+        }
+        return false;
+    }
+
+    private PooledConnection open() throws SQLException {
+        return new PooledConnection(DriverManager.getConnection(url, user, password));
+    }
+
+    private void release(PooledConnection pooled) {
+        try {
+            if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            destroy(pooled);
+            return;
+        }
+
+        lock.lock();
+        try {
+            if (!closed && !pooled.isExpired(System.nanoTime())) {
+                pooled.lastUsed = System.nanoTime();
+                idle.push(pooled);
+                available.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        destroy(pooled);
+    }
+
+    private void destroy(PooledConnection pooled) {
+        closeQuietly(pooled.physical);
+        releaseSlot();
+    }
+
+    private void releaseSlot() {
+        lock.lock();
+        try {
+            total--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recordWait(long waitNanos) {
+        lock.lock();
+        try {
+            borrowCount++;
+            totalWaitNanos += waitNanos;
+            maxObservedWaitNanos = Math.max(maxObservedWaitNanos, waitNanos);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void evictIdle() {
+        List<PooledConnection> evicted = new ArrayList<>();
+        long now = System.nanoTime();
+        lock.lock();
+        try {
+            Iterator<PooledConnection> it = idle.iterator();
+            while (it.hasNext()) {
+                PooledConnection pooled = it.next();
+                if (now - pooled.lastUsed > idleTimeoutNanos || pooled.isExpired(now)) {
+                    it.remove();
+                    evicted.add(pooled);
+                }
+            }
+            evictedCount += evicted.size();
+        } finally {
+            lock.unlock();
+        }
+        for (PooledConnection pooled : evicted) {
+            destroy(pooled);
+        }
+    }
+
+    @Override
+    public void close() {
+        List<PooledConnection> drained;
+        lock.lock();
+        try {
+            closed = true;
+            drained = new ArrayList<>(idle);
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        evictor.shutdownNow();
+        for (PooledConnection pooled : drained) {
+            destroy(pooled);
+        }
+    }
+
+    /** Profiles the statements of connections borrowed from now on; {@code null} stops profiling. */
+    public void setProfiler(StatementProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    public StatementProfiler getProfiler() {
+        return profiler;
+    }
+
+    public int getActiveCount() {
+        lock.lock();
+        try {
+            return total - idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getIdleCount() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getBorrowCount() {
+        lock.lock();
+        try {
+            return borrowCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getAverageWaitMillis() {
+        lock.lock();
+        try {
+            return borrowCount == 0 ? 0 : totalWaitNanos / 1e6 / borrowCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public double getMaxWaitMillis() {
+        lock.lock();
+        try {
+            return maxObservedWaitNanos / 1e6;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getTimeoutCount() {
+        lock.lock();
+        try {
+            return timeoutCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return String.format("ConnectionPool[active=%d, idle=%d, max=%d, borrows=%d, avgWait=%.2fms, maxWait=%.2fms, timeouts=%d, invalid=%d, evicted=%d]",
+                    total - idle.size(), idle.size(), maxSize, borrowCount,
+                    borrowCount == 0 ? 0 : totalWaitNanos / 1e6 / borrowCount, maxObservedWaitNanos / 1e6,
+                    timeoutCount, validationFailures, evictedCount);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private final class PooledConnection {
+        private final Connection physical;
+        private final long createdAt = System.nanoTime();
+        private long lastUsed = createdAt;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        boolean isExpired(long now) {
+            return now - createdAt > maxLifetimeNanos;
+        }
+
+        Connection lease() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] {Connection.class}, new Lease(this));
+        }
+    }
+
+    private final class Lease implements InvocationHandler {
+        private PooledConnection pooled;
+
+        Lease(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (pooled != null) {
+                        PooledConnection returned = pooled;
+                        pooled = null;
+                        release(returned);
+                    }
+                    return null;
+                case "isClosed":
+                    return pooled == null || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + (pooled == null ? "returned" : pooled.physical) + "]";
+                default:
+                    if (pooled == null) {
+                        throw new SQLException("Connection has already been returned to the pool");
+                    }
+                    try {
+                        return method.invoke(pooled.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
@@ -1,4 +1,10 @@
+import java.io.IOException;
 import java.sql.*;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 import java.util.Vector;
 import java.util.regex.*;
@@ -13,19 +19,7 @@ class Room {
         this.roomNumber = roomNumber;
         this.type = type;
         this.available = true;
-        switch (type) {
-            case "Single":
-                this.price = 1000;
-                break;
-            case "Double":
-                this.price = 1700;
-                break;
-            case "Suite":
-                this.price = 3000;
-                break;
-            default:
-                this.price = 0;
-        }
+        this.price = RoomType.priceOf(type);
     }
 
     public int getRoomNumber() {
@@ -92,10 +86,18 @@ class Customer {
 class Booking {
     private Vector<Room> rooms;
     private Customer customer;
+    private LocalDate checkIn;
+    private LocalDate checkOut;
 
     public Booking(Vector<Room> rooms, Customer customer) {
+        this(rooms, customer, LocalDate.now(), null);
+    }
+
+    public Booking(Vector<Room> rooms, Customer customer, LocalDate checkIn, LocalDate checkOut) {
         this.rooms = rooms;
         this.customer = customer;
+        this.checkIn = checkIn;
+        this.checkOut = checkOut;
     }
 
     public Vector<Room> getRooms() {
@@ -106,45 +108,52 @@ class Booking {
         return customer;
     }
 
+    public LocalDate getCheckIn() {
+        return checkIn;
+    }
+
+    public LocalDate getCheckOut() {
+        return checkOut;
+    }
+
     @Override
     public String toString() {
         StringBuilder details = new StringBuilder("Customer: " + customer + "\nRooms: ");
         for (Room room : rooms) {
             details.append(room.getRoomNumber()).append(" ");
         }
+        details.append("\nStay: ").append(checkIn).append(" to ").append(checkOut == null ? "until cancelled" : checkOut);
         return details.toString();
     }
 }
 
 class SerenitySuitesHotelManagementSystem {
-    private Vector<Room> rooms = new Vector<>();
     private Vector<Booking> bookings = new Vector<>();
     private Scanner scanner = new Scanner(System.in);
-    private Connection connection;
+    private final LocalDate horizonStart = LocalDate.now();
+    private PersistenceConfig.Repositories store;
+    private BookingService service;
 
     public SerenitySuitesHotelManagementSystem() {
         try {
-            connection = DriverManager.getConnection("jdbc:mysql://localhost:3307/serenity_suites", "root", "");
-            initializeRooms();
-        } catch (SQLException e) {
+            store = PersistenceConfig.load(PersistenceConfig.Mode.MYSQL,
+                    "jdbc:mysql://localhost:3307/serenity_suites?rewriteBatchedStatements=true&useCursorFetch=true", "root", "", 10).open();
+            service = new CachingBookingService(store.getRooms(), store.getBookings(), Validators.Ruleset.CONSOLE);
+            service.allRooms();
+        } catch (SQLException | IOException e) {
             System.out.println("Database connection failed: " + e.getMessage());
         }
+        try {
+            HotelMetrics.get().serveIfConfigured();
+        } catch (IOException e) {
+            System.out.println("Metrics endpoint not started: " + e.getMessage());
+        }
     }
 
-    private void initializeRooms() {
-        try (Statement stmt = connection.createStatement()) {
-            ResultSet rs = stmt.executeQuery("SELECT * FROM rooms");
-            while (rs.next()) {
-                int roomNumber = rs.getInt("room_number");
-                String type = rs.getString("type");
-                boolean available = rs.getBoolean("available");
-                Room room = new Room(roomNumber, type);
-                room.setAvailable(available);
-                rooms.add(room);
-            }
-        } catch (SQLException e) {
-            System.out.println("Error loading rooms: " + e.getMessage());
-        }
+    private static Room toRoom(BookingService.RoomInfo info) {
+        Room room = new Room(info.getRoomNumber(), info.getType());
+        room.setAvailable(info.isAvailable());
+        return room;
     }
 
     public void bookRoom() {
@@ -152,49 +161,67 @@ class SerenitySuitesHotelManagementSystem {
         String contact = promptForValidContact();
         String address = promptForValidAddress();
         String email = promptForValidEmail();
+        LocalDate checkIn = promptForCheckIn();
+        LocalDate checkOut = promptForCheckOut(checkIn);
 
-        Vector<Room> bookedRooms = getSelectedRooms();
+        Vector<Room> bookedRooms = getSelectedRooms(checkIn, checkOut);
         if (bookedRooms.isEmpty()) {
             System.out.println("No valid rooms selected. Booking aborted.");
             return;
         }
 
-        double totalAmount = 0;
-        for (Room room : bookedRooms) {
-            room.setAvailable(false);
-            totalAmount += room.getPrice();
+        // Priced before booking: the booking's own nights would raise the occupancy-based rates.
+        int[] roomNumbers = new int[bookedRooms.size()];
+        for (int i = 0; i < roomNumbers.length; i++) {
+            roomNumbers[i] = bookedRooms.get(i).getRoomNumber();
+        }
+        String total;
+        try {
+            total = "Total Amount: " + service.quote(roomNumbers, checkIn, checkOut) + (checkOut == null ? " per night" : "");
+        } catch (SQLException e) {
+            total = "The total could not be priced: " + e.getMessage();
         }
 
-        saveBooking(bookedRooms, new Customer(name, contact, address, email));
-
-        System.out.println("Booking Complete! Total Amount: " + totalAmount);
+        Booking booking = new Booking(bookedRooms, new Customer(name, contact, address, email), checkIn, checkOut);
+        if (!saveBooking(booking)) {
+            return;
+        }
+        bookings.add(booking);
+        System.out.println("Booking Complete! " + total);
     }
 
-    private void saveBooking(Vector<Room> rooms, Customer customer) {
-        try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO bookings (customer_name, contact, address, email, rooms) VALUES (?, ?, ?, ?, ?)")) {
-            StringBuilder roomNumbers = new StringBuilder();
-            for (Room room : rooms) {
-                roomNumbers.append(room.getRoomNumber()).append(",");
-            }
-
-            stmt.setString(1, customer.getName());
-            stmt.setString(2, customer.getContact());
-            stmt.setString(3, customer.getAddress());
-            stmt.setString(4, customer.getEmail());
-            stmt.setString(5, roomNumbers.toString());
+    private boolean saveBooking(Booking booking) {
+        Vector<Room> bookedRooms = booking.getRooms();
+        Customer customer = booking.getCustomer();
+        int[] roomNumbers = new int[bookedRooms.size()];
+        for (int i = 0; i < roomNumbers.length; i++) {
+            roomNumbers[i] = bookedRooms.get(i).getRoomNumber();
+        }
 
-            stmt.executeUpdate();
+        try {
+            long bookingId = service.book(new BookingRequest(roomNumbers, customer.getName(), customer.getContact(), customer.getAddress(), customer.getEmail(),
+                    booking.getCheckIn(), booking.getCheckOut()));
+            System.out.println("Booking #" + bookingId + " saved.");
+            return true;
+        } catch (RoomUnavailableException e) {
+            System.out.println(e.getMessage() + ". Booking aborted.");
         } catch (SQLException e) {
             System.out.println("Error saving booking: " + e.getMessage());
         }
+        return false;
     }
 
-    private Vector<Room> getSelectedRooms() {
+    private Vector<Room> getSelectedRooms(LocalDate checkIn, LocalDate checkOut) {
+        Map<Integer, Room> free = new HashMap<>();
         System.out.println("Available rooms:");
-        for (Room room : rooms) {
-            if (room.isAvailable()) {
+        try {
+            for (BookingService.RoomInfo info : service.availableRooms(null, checkIn, checkOut)) {
+                Room room = toRoom(info);
+                free.put(room.getRoomNumber(), room);
                 System.out.println(room);
             }
+        } catch (SQLException e) {
+            System.out.println("Error loading rooms: " + e.getMessage());
         }
 
         Vector<Room> selectedRooms = new Vector<>();
@@ -207,8 +234,10 @@ class SerenitySuitesHotelManagementSystem {
                 break;
             }
 
-            Room room = findRoomByNumber(roomNumber);
-            if (room != null && room.isAvailable()) {
+            Room room = free.get(roomNumber);
+            if (selectedRooms.contains(room)) {
+                System.out.println("Room " + roomNumber + " is already in this booking.");
+            } else if (room != null) {
                 selectedRooms.add(room);
                 System.out.println("Room " + roomNumber + " added to booking.");
             } else {
@@ -219,13 +248,49 @@ class SerenitySuitesHotelManagementSystem {
         return selectedRooms;
     }
 
-    private Room findRoomByNumber(int roomNumber) {
-        for (Room room : rooms) {
-            if (room.getRoomNumber() == roomNumber) {
-                return room;
+    /** Whether a stay falls inside the window the availability calendar tracks. */
+    private boolean withinHorizon(LocalDate checkIn, LocalDate checkOut) {
+        LocalDate horizonEnd = horizonStart.plusDays(AvailabilityCalendar.HORIZON_DAYS);
+        return !checkIn.isBefore(horizonStart) && checkIn.isBefore(horizonEnd)
+                && (checkOut == null || !checkOut.isAfter(horizonEnd));
+    }
+
+    private LocalDate promptForCheckIn() {
+        while (true) {
+            System.out.print("Enter check-in date (YYYY-MM-DD, blank for today): ");
+            String input = scanner.nextLine().trim();
+            if (input.isEmpty()) {
+                return LocalDate.now();
+            }
+            try {
+                LocalDate checkIn = LocalDate.parse(input);
+                if (withinHorizon(checkIn, null)) {
+                    return checkIn;
+                }
+                System.out.println("Check-in must be between " + horizonStart + " and " + horizonStart.plusDays(AvailabilityCalendar.HORIZON_DAYS - 1) + ".");
+            } catch (DateTimeParseException e) {
+                System.out.println("Invalid date. Please use the YYYY-MM-DD format.");
+            }
+        }
+    }
+
+    private LocalDate promptForCheckOut(LocalDate checkIn) {
+        while (true) {
+            System.out.print("Enter check-out date (YYYY-MM-DD, blank to stay until cancelled): ");
+            String input = scanner.nextLine().trim();
+            if (input.isEmpty()) {
+                return null;
+            }
+            try {
+                LocalDate checkOut = LocalDate.parse(input);
+                if (checkOut.isAfter(checkIn) && withinHorizon(checkIn, checkOut)) {
+                    return checkOut;
+                }
+                System.out.println("Check-out must be after " + checkIn + " and no later than " + horizonStart.plusDays(AvailabilityCalendar.HORIZON_DAYS) + ".");
+            } catch (DateTimeParseException e) {
+                System.out.println("Invalid date. Please use the YYYY-MM-DD format.");
             }
         }
-        return null;
     }
 
     private String promptForValidName() {
@@ -285,27 +350,117 @@ class SerenitySuitesHotelManagementSystem {
     }
 
     private boolean validateName(String name) {
-        return name.matches("^[A-Z][a-z]{1,}[ ]+[A-Z][a-z]{1,}$");
+        return Validators.Ruleset.CONSOLE.isValid(Validators.Field.NAME, name);
     }
 
     private boolean validateContact(String contact) {
-        return contact.matches("[0-9]{10}");
+        return Validators.Ruleset.CONSOLE.isValid(Validators.Field.CONTACT, contact);
     }
 
     private boolean validateAddress(String address) {
-        return address.length() >= 10 && address.matches(".*[A-Za-z].*") && address.matches(".*[0-9].*");
+        return Validators.Ruleset.CONSOLE.isValid(Validators.Field.ADDRESS, address);
     }
 
     private boolean validateEmail(String email) {
-        return email.matches("^[a-zA-Z0-9_+&*-]+(?:\\.[a-zA-Z0-9_+&*-]+)*@(?:[a-zA-Z0-9-]+\\.)+[a-zA-Z]{2,7}$");
+        return Validators.Ruleset.CONSOLE.isValid(Validators.Field.EMAIL, email);
+    }
+
+    public void close() {
+        HotelMetrics.get().stopServing();
+        if (service != null) {
+            service.close();
+        }
+        if (store != null) {
+            store.close();
+        }
     }
 
     public void viewAvailableRooms() {
-        System.out.println("Available rooms:");
-        for (Room room : rooms) {
-            if (room.isAvailable()) {
-                System.out.println(room);
+        viewAvailableRooms(null, LocalDate.now(), LocalDate.now().plusDays(1));
+    }
+
+    public void listAllRooms() {
+        Map<Integer, String> occupants = new HashMap<>();
+        try {
+            if (store != null && store.getPool() != null) {
+                occupants = BookingDao.currentOccupants(store.getPool());
+            }
+        } catch (SQLException e) {
+            System.out.println("Error loading occupants: " + e.getMessage());
+        }
+
+        System.out.println("All rooms:");
+        try {
+            for (BookingService.RoomInfo info : service.allRooms()) {
+                Room room = toRoom(info);
+                String occupant = occupants.get(room.getRoomNumber());
+                System.out.println(occupant == null ? room.toString() : room + " to " + occupant);
+            }
+        } catch (SQLException e) {
+            System.out.println("Error loading rooms: " + e.getMessage());
+        }
+    }
+
+    public void viewAvailableRooms(String type, LocalDate checkIn, LocalDate checkOut) {
+        System.out.println(type == null ? "Available rooms:" : "Available " + type + " rooms from " + checkIn + " to " + checkOut + ":");
+        try {
+            for (BookingService.RoomInfo info : service.availableRooms(type, checkIn, checkOut)) {
+                System.out.println(toRoom(info));
+            }
+        } catch (SQLException e) {
+            System.out.println("Error loading rooms: " + e.getMessage());
+        }
+    }
+
+    public void cancelBooking() {
+        System.out.print("Enter customer name, contact or email to cancel booking: ");
+        List<BookingRecord> matches = findBookings(scanner.nextLine());
+        if (matches.isEmpty()) {
+            return;
+        }
+
+        BookingRecord toCancel = matches.get(0);
+        if (matches.size() > 1) {
+            System.out.print("Enter the number of the booking to cancel (or 0 to keep all): ");
+            int choice = scanner.hasNextInt() ? scanner.nextInt() : 0;
+            scanner.nextLine();
+            if (choice < 1 || choice > matches.size()) {
+                System.out.println("No booking canceled.");
+                return;
+            }
+            toCancel = matches.get(choice - 1);
+        }
+
+        try {
+            if (service.cancel(toCancel.getId())) {
+                System.out.println("Booking #" + toCancel.getId() + " canceled successfully.");
+            } else {
+                System.out.println("Booking #" + toCancel.getId() + " was already canceled.");
             }
+        } catch (SQLException e) {
+            System.out.println("Error canceling booking: " + e.getMessage());
+        }
+    }
+
+    public void searchBookingByCustomer() {
+        System.out.print("Enter customer name, contact or email to search: ");
+        findBookings(scanner.nextLine());
+    }
+
+    /** Prints the numbered bookings matching {@code query} and returns them. */
+    private List<BookingRecord> findBookings(String query) {
+        try {
+            List<BookingRecord> matches = service.search(query);
+            if (matches.isEmpty()) {
+                System.out.println("No booking found for: " + query);
+            }
+            for (int i = 0; i < matches.size(); i++) {
+                System.out.println((i + 1) + ". " + matches.get(i));
+            }
+            return matches;
+        } catch (SQLException e) {
+            System.out.println("Error searching bookings: " + e.getMessage());
+            return new Vector<>();
         }
     }
 }
@@ -330,15 +485,16 @@ public class Hotel18018v3 {
                     hms.viewAvailableRooms();
                     break;
                 case 3:
-                    
+                    hms.cancelBooking();
                     break;
                 case 4:
-                    
+                    hms.searchBookingByCustomer();
                     break;
                 case 5:
-                    
+                    hms.listAllRooms();
                     break;
                 case 6:
+                    hms.close();
                     System.out.println("Thank you for using Serenity Suites!");
                     break;
                 default:
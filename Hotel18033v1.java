@@ -1,3 +1,8 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
 
 class Room {
@@ -10,19 +15,7 @@ class Room {
         this.roomNumber = roomNumber;
         this.type = type;
         this.available = true;
-        switch (type) {
-            case "Single":
-                this.price = 1000;
-                break;
-            case "Double":
-                this.price = 1700;
-                break;
-            case "Suite":
-                this.price = 3000;
-                break;
-            default:
-                this.price = 0;
-        }
+        this.price = RoomType.priceOf(type);
     }
 
     public int getRoomNumber() {
@@ -68,6 +61,18 @@ class Customer {
         return name;
     }
 
+    public String getContact() {
+        return contact;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
     @Override
     public String toString() {
         return name + " (" + contact + ", " + address + ", " + email + ")";
@@ -75,14 +80,20 @@ class Customer {
 }
 
 class Booking {
+    private long id;
     private Room[] rooms;
     private Customer customer;
 
-    public Booking(Room[] rooms, Customer customer) {
+    public Booking(long id, Room[] rooms, Customer customer) {
+        this.id = id;
         this.rooms = rooms;
         this.customer = customer;
     }
 
+    public long getId() {
+        return id;
+    }
+
     public Room[] getRooms() {
         return rooms;
     }
@@ -102,16 +113,106 @@ class Booking {
 }
 
 class SerenitySuitesHotelManagementSystem {
-    private Room[] rooms = new Room[15];
-    private Booking[] bookings = new Booking[10];
-    private int bookingCount = 0;
+    private static final int STANDARD_ROOMS = 15;
+
+    private Room[] rooms = new Room[STANDARD_ROOMS];
+    private int roomCount = 0;
+    private final BookingLedger ledger = new BookingLedger();
+    private BookingJournal journal;
     private Scanner scanner = new Scanner(System.in);
 
     public SerenitySuitesHotelManagementSystem() {
-        for (int i = 0; i < rooms.length; i++) {
+        for (int i = 0; i < STANDARD_ROOMS; i++) {
             int roomNumber = 101 + i;
             String type = (roomNumber % 3 == 0) ? "Suite" : (roomNumber % 2 == 0) ? "Double" : "Single";
-            rooms[i] = new Room(roomNumber, type);
+            addRoom(new Room(roomNumber, type));
+        }
+        try {
+            journal = BookingJournal.open(Paths.get(System.getProperty("hotel.journal.path", "serenity_suites-v1-journal")),
+                    new BookingJournal.Handler() {
+                        @Override
+                        public void roomSaved(int roomNumber, String type, double price) {
+                            if (findRoom(roomNumber) == null) {
+                                addRoom(new Room(roomNumber, type));
+                            }
+                        }
+
+                        @Override
+                        public void booked(long bookingId, BookingRequest request) {
+                            for (int roomNumber : request.getRoomNumbers()) {
+                                Room room = findRoom(roomNumber);
+                                if (room != null) {
+                                    room.setAvailable(false);
+                                }
+                            }
+                            ledger.add(new BookingRecord(bookingId, request.getName(), request.getContact(),
+                                    request.getAddress(), request.getEmail(), request.getRoomNumbers()));
+                        }
+
+                        @Override
+                        public void cancelled(long bookingId) {
+                            release(ledger.cancel(bookingId));
+                        }
+                    });
+            if (journal.getEventsSinceSnapshot() >= 1000) {
+                long cut = journal.beginSnapshot();
+                journal.writeSnapshot(cut, out -> {
+                    for (int i = STANDARD_ROOMS; i < roomCount; i++) {
+                        out.roomSaved(rooms[i].getRoomNumber(), rooms[i].getType(), rooms[i].getPrice());
+                    }
+                    ledger.forEach(record -> out.booked(record.getId(), toRequest(record)));
+                });
+            }
+        } catch (IOException e) {
+            System.out.println("Could not open the booking journal, bookings will not be kept: " + e.getMessage());
+        }
+    }
+
+    private Room findRoom(int roomNumber) {
+        for (int i = 0; i < roomCount; i++) {
+            if (rooms[i].getRoomNumber() == roomNumber) {
+                return rooms[i];
+            }
+        }
+        return null;
+    }
+
+    private void addRoom(Room room) {
+        if (roomCount == rooms.length) {
+            rooms = Arrays.copyOf(rooms, roomCount * 2);
+        }
+        rooms[roomCount++] = room;
+    }
+
+    private void release(BookingRecord record) {
+        if (record == null) {
+            return;
+        }
+        for (int roomNumber : record.getRoomNumbers()) {
+            Room room = findRoom(roomNumber);
+            if (room != null) room.setAvailable(true);
+        }
+    }
+
+    private Booking toBooking(BookingRecord record) {
+        int[] roomNumbers = record.getRoomNumbers();
+        Room[] bookedRooms = new Room[roomNumbers.length];
+        for (int i = 0; i < roomNumbers.length; i++) {
+            bookedRooms[i] = findRoom(roomNumbers[i]);
+        }
+        return new Booking(record.getId(), bookedRooms, new Customer(record.getName(), record.getContact(),
+                record.getAddress(), record.getEmail()));
+    }
+
+    private static BookingRequest toRequest(BookingRecord record) {
+        return new BookingRequest(record.getRoomNumbers(), record.getName(), record.getContact(), record.getAddress(),
+                record.getEmail(), LocalDate.now(), null);
+    }
+
+    public void close() {
+        ledger.close();
+        if (journal != null) {
+            journal.close();
         }
     }
 
@@ -121,7 +222,7 @@ class SerenitySuitesHotelManagementSystem {
         while (true) {
             System.out.print("Enter customer name: ");
             name = scanner.nextLine().trim();
-            if (name.matches("^[A-Z][a-z]+( [A-Z][a-z]+)+$")) {
+            if (Validators.Ruleset.CLASSIC.isValid(Validators.Field.NAME, name)) {
                 break;
             } else {
                 System.out.println("Invalid name. Please enter a valid name (e.g., John Doe). Each word should start with a capital letter and contain alphabetic characters only.");
@@ -136,7 +237,7 @@ class SerenitySuitesHotelManagementSystem {
         while (true) {
             System.out.print("Enter contact (10-digit number): ");
             contact = scanner.nextLine().trim();
-            if (contact.matches("\\d{10}")) break;
+            if (Validators.Ruleset.CLASSIC.isValid(Validators.Field.CONTACT, contact)) break;
             System.out.println("Invalid contact number. Please enter exactly 10 digits (no letters or special characters).");
         }
         return contact;
@@ -148,7 +249,7 @@ class SerenitySuitesHotelManagementSystem {
         while (true) {
             System.out.print("Enter address: ");
             address = scanner.nextLine().trim();
-            if (address.length() >= 10 && address.matches(".*[A-Za-z].*") && address.matches(".*\\d.*")) break;
+            if (Validators.Ruleset.CLASSIC.isValid(Validators.Field.ADDRESS, address)) break;
             System.out.println("Invalid address. Address must contain at least 10 characters, including letters and numbers.");
         }
         return address;
@@ -160,7 +261,7 @@ class SerenitySuitesHotelManagementSystem {
         while (true) {
             System.out.print("Enter email: ");
             email = scanner.nextLine().trim();
-            if (email.matches("^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\\.(com|in|edu|org|net)$")) break;
+            if (Validators.Ruleset.CLASSIC.isValid(Validators.Field.EMAIL, email)) break;
             System.out.println("Invalid email. Please enter a valid email address (e.g., user@example.com).");
         }
         return email;
@@ -174,31 +275,31 @@ class SerenitySuitesHotelManagementSystem {
         String email = getValidEmail();
 
         System.out.println("Available rooms:");
-        for (Room room : rooms) {
-            if (room.isAvailable()) {
-                System.out.println(room);
+        for (int i = 0; i < roomCount; i++) {
+            if (rooms[i].isAvailable()) {
+                System.out.println(rooms[i]);
             }
         }
 
         Room[] bookedRooms = new Room[5];
         double totalAmount = 0;
-        int roomCount = 0;
+        int bookedCount = 0;
 
         while (true) {
             System.out.print("Enter room number to book (or 0 to finish): ");
             int roomNumber = scanner.nextInt();
             if (roomNumber == 0) break;
 
-            Room room = null;
-            for (Room r : rooms) {
-                if (r.getRoomNumber() == roomNumber && r.isAvailable()) {
-                    room = r;
-                    break;
-                }
+            Room room = findRoom(roomNumber);
+            if (room != null && !room.isAvailable()) {
+                room = null;
             }
 
             if (room != null) {
-                bookedRooms[roomCount++] = room;
+                if (bookedCount == bookedRooms.length) {
+                    bookedRooms = Arrays.copyOf(bookedRooms, bookedCount * 2);
+                }
+                bookedRooms[bookedCount++] = room;
                 room.setAvailable(false);
                 totalAmount += room.getPrice();
                 System.out.println("Room " + roomNumber + " booked successfully.");
@@ -209,8 +310,25 @@ class SerenitySuitesHotelManagementSystem {
 
         scanner.nextLine();
 
-        if (roomCount > 0) {
-            bookings[bookingCount++] = new Booking(bookedRooms, new Customer(name, contact, address, email));
+        if (bookedCount > 0) {
+            int[] roomNumbers = new int[bookedCount];
+            for (int i = 0; i < bookedCount; i++) {
+                roomNumbers[i] = bookedRooms[i].getRoomNumber();
+            }
+            BookingRecord record = new BookingRecord(ledger.getNextId(), name, contact, address, email, roomNumbers);
+            if (journal != null) {
+                try {
+                    journal.sync(journal.appendBooking(record.getId(), toRequest(record)));
+                } catch (IOException e) {
+                    for (int i = 0; i < bookedCount; i++) {
+                        bookedRooms[i].setAvailable(true);
+                    }
+                    System.out.println("Could not save the booking: " + e.getMessage());
+                    return;
+                }
+            }
+            ledger.add(record);
+            System.out.println("Booking ID: " + record.getId());
             System.out.println("\nBooking Complete!");
             System.out.println("Total Amount: " + totalAmount);
         } else {
@@ -220,9 +338,9 @@ class SerenitySuitesHotelManagementSystem {
 
     public void viewAvailableRooms() {
         System.out.println("Available rooms:");
-        for (Room room : rooms) {
-            if (room.isAvailable()) {
-                System.out.println(room);
+        for (int i = 0; i < roomCount; i++) {
+            if (rooms[i].isAvailable()) {
+                System.out.println(rooms[i]);
             }
         }
     }
@@ -231,42 +349,69 @@ class SerenitySuitesHotelManagementSystem {
         System.out.print("Enter customer name to cancel booking: ");
         String name = scanner.nextLine();
 
-        for (int i = 0; i < bookingCount; i++) {
-            if (bookings[i] != null && bookings[i].getCustomer().getName().equalsIgnoreCase(name)) {
-                for (Room room : bookings[i].getRooms()) {
-                    if (room != null) room.setAvailable(true);
-                }
-                System.out.println("Booking canceled for customer: " + name);
-                for (int j = i; j < bookingCount - 1; j++) {
-                    bookings[j] = bookings[j + 1];
-                }
-                bookings[--bookingCount] = null;
+        List<BookingRecord> matches = ledger.byCustomer(name);
+        if (matches.isEmpty()) {
+            System.out.println("Booking not found.");
+            return;
+        }
+        BookingRecord record = matches.get(0);
+        if (journal != null) {
+            try {
+                journal.sync(journal.appendCancel(record.getId()));
+            } catch (IOException e) {
+                System.out.println("Could not cancel the booking: " + e.getMessage());
                 return;
             }
         }
-        System.out.println("Booking not found.");
+        release(ledger.cancel(record.getId()));
+        System.out.println("Booking canceled for customer: " + name);
     }
 
     public void searchBookingByCustomer() {
         System.out.print("Enter customer name to search: ");
         String name = scanner.nextLine();
 
-        for (Booking booking : bookings) {
-            if (booking != null && booking.getCustomer().getName().equalsIgnoreCase(name)) {
-                System.out.println("Booking found:");
-                System.out.println(booking);
-                return;
-            }
+        List<BookingRecord> matches = ledger.byCustomer(name);
+        if (matches.isEmpty()) {
+            System.out.println("No booking found for the given customer.");
+            return;
         }
-        System.out.println("No booking found for the given customer.");
+        System.out.println("Booking found:");
+        System.out.println(toBooking(matches.get(0)));
     }
 
     public void listAllRooms() {
         System.out.println("All rooms:");
-        for (Room room : rooms) {
-            System.out.println(room);
+        for (int i = 0; i < roomCount; i++) {
+            System.out.println(rooms[i]);
         }
     }
+
+    public void addRoom() {
+        System.out.print("Enter room number: ");
+        int roomNumber = scanner.nextInt();
+        scanner.nextLine();
+        if (roomNumber <= 0 || findRoom(roomNumber) != null) {
+            System.out.println("Room number is invalid or already exists.");
+            return;
+        }
+        System.out.print("Enter room type (Single/Double/Suite): ");
+        RoomType type = RoomType.of(scanner.nextLine());
+        if (type == null) {
+            System.out.println("Invalid room type.");
+            return;
+        }
+        if (journal != null) {
+            try {
+                journal.sync(journal.appendRoom(roomNumber, type.getLabel(), type.getPrice()));
+            } catch (IOException e) {
+                System.out.println("Could not save the room: " + e.getMessage());
+                return;
+            }
+        }
+        addRoom(new Room(roomNumber, type.getLabel()));
+        System.out.println("Room " + roomNumber + " added.");
+    }
 }
 
 public class Hotel18033v1 {
@@ -276,7 +421,7 @@ public class Hotel18033v1 {
         int choice;
 
         do {
-            System.out.println("\n1. Book Room\n2. View Available Rooms\n3. Cancel Booking\n4. Search Booking by Customer\n5. List All Rooms\n6. Exit");
+            System.out.println("\n1. Book Room\n2. View Available Rooms\n3. Cancel Booking\n4. Search Booking by Customer\n5. List All Rooms\n6. Add Room\n7. Exit");
             System.out.print("Choice: ");
             choice = scanner.nextInt();
             scanner.nextLine();
@@ -298,12 +443,16 @@ public class Hotel18033v1 {
                     hms.listAllRooms();
                     break;
                 case 6:
+                    hms.addRoom();
+                    break;
+                case 7:
+                    hms.close();
                     System.out.println("Thank you for using Serenity Suites!");
                     break;
                 default:
                     System.out.println("Invalid choice. Try again.");
             }
-        } while (choice != 6);
+        } while (choice != 7);
 
         scanner.close();
     }
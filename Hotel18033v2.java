@@ -1,5 +1,10 @@
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 class Room {
     private int roomNumber;
@@ -11,19 +16,7 @@ class Room {
         this.roomNumber = roomNumber;
         this.type = type;
         this.available = true;
-        switch (type) {
-            case "Single":
-                this.price = 1000;
-                break;
-            case "Double":
-                this.price = 1700;
-                break;
-            case "Suite":
-                this.price = 3000;
-                break;
-            default:
-                this.price = 0;
-        }
+        this.price = RoomType.priceOf(type);
     }
 
     public int getRoomNumber() {
@@ -69,6 +62,14 @@ class Customer {
         return name;
     }
 
+    public String getContact() {
+        return contact;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
     @Override
     public String toString() {
         return name + " (" + contact + ", " + address + ", " + email + ")";
@@ -76,14 +77,20 @@ class Customer {
 }
 
 class Booking {
+    private long id;
     private Vector<Room> rooms;
     private Customer customer;
 
-    public Booking(Vector<Room> rooms, Customer customer) {
+    public Booking(long id, Vector<Room> rooms, Customer customer) {
+        this.id = id;
         this.rooms = rooms;
         this.customer = customer;
     }
 
+    public long getId() {
+        return id;
+    }
+
     public Vector<Room> getRooms() {
         return rooms;
     }
@@ -103,68 +110,157 @@ class Booking {
 }
 
 class SerenitySuitesHotelManagementSystem {
-    private Vector<Room> rooms = new Vector<>();
-    private Vector<Booking> bookings = new Vector<>();
+    private RoomStore rooms = new RoomStore();
+    private final Map<Long, Booking> bookings = new ConcurrentHashMap<>();
+    private final PrefixIndex<Booking> bookingIndex = new PrefixIndex<>();
+    private final PersistenceConfig.Repositories store;
 
     public SerenitySuitesHotelManagementSystem() {
-        for (int i = 0; i < 15; i++) {
-            int roomNumber = 101 + i;
-            String type = (roomNumber % 3 == 0) ? "Suite" : (roomNumber % 2 == 0) ? "Double" : "Single";
-            rooms.add(new Room(roomNumber, type));
+        store = openStore();
+        try {
+            store.getRooms().forEachRoom((roomNumber, type, price, available, version) ->
+                    rooms.add(roomNumber, type, price, available, version));
+            if (rooms.size() == 0) {
+                for (int i = 0; i < 15; i++) {
+                    int roomNumber = 101 + i;
+                    String type = (roomNumber % 3 == 0) ? "Suite" : (roomNumber % 2 == 0) ? "Double" : "Single";
+                    store.getRooms().saveRoom(roomNumber, type, RoomType.priceOf(type));
+                    rooms.add(roomNumber, type, RoomType.priceOf(type), true);
+                }
+            }
+            store.getBookings().forEachBooking(record -> {
+                Vector<Room> bookedRooms = new Vector<>();
+                for (int roomNumber : record.getRoomNumbers()) {
+                    Room room = findRoom(roomNumber);
+                    if (room != null) {
+                        bookedRooms.add(room);
+                    }
+                }
+                Booking booking = new Booking(record.getId(), bookedRooms,
+                        new Customer(record.getName(), record.getContact(), record.getAddress(), record.getEmail()));
+                addBooking(booking);
+            });
+        } catch (SQLException e) {
+            System.out.println("Could not load the booking store: " + e.getMessage());
+        }
+    }
+
+    /** The configured store, or an unsaved in-memory one if it cannot be opened, so the desk still works. */
+    private static PersistenceConfig.Repositories openStore() {
+        try {
+            return PersistenceConfig.load(PersistenceConfig.Mode.MEMORY, null, null, null, 2).open();
+        } catch (SQLException | IOException e) {
+            System.out.println("Could not open the booking store: " + e.getMessage() + ". Bookings will not be saved.");
+            InMemoryRepository memory = new InMemoryRepository();
+            return new PersistenceConfig.Repositories(memory, memory, null);
+        }
+    }
+
+    private Room findRoom(int roomNumber) {
+        BookingService.RoomInfo info = rooms.get(roomNumber);
+        return info == null ? null : toRoom(info);
+    }
+
+    private static Room toRoom(BookingService.RoomInfo info) {
+        Room room = new Room(info.getRoomNumber(), info.getType());
+        room.setAvailable(info.isAvailable());
+        return room;
+    }
+
+    private void addBooking(Booking booking) {
+        bookings.put(booking.getId(), booking);
+        Customer customer = booking.getCustomer();
+        synchronized (bookingIndex) {
+            bookingIndex.add(booking, customer.getName(), customer.getContact(), customer.getEmail());
         }
     }
 
+    private List<Booking> findBookings(String query) {
+        synchronized (bookingIndex) {
+            return bookingIndex.search(query);
+        }
+    }
+
+    public void close() {
+        store.close();
+    }
+
     public void viewAvailableRooms() {
         System.out.println("\nAvailable Rooms:");
-        for (Room room : rooms) {
-            if (room.isAvailable()) {
-                System.out.println(room);
-            }
+        for (BookingService.RoomInfo info : rooms.available()) {
+            System.out.println(toRoom(info));
         }
     }
 
     public void cancelBooking() {
         Scanner scanner = new Scanner(System.in);
-        System.out.print("Enter customer name to cancel booking: ");
-        String name = scanner.nextLine();
+        System.out.print("Enter customer name, contact or email to cancel booking: ");
+        String query = scanner.nextLine();
 
-        Booking bookingToCancel = null;
-        for (Booking booking : bookings) {
-            if (booking.getCustomer().getName().equalsIgnoreCase(name)) {
-                bookingToCancel = booking;
-                break;
-            }
+        List<Booking> matches = findBookings(query);
+        if (matches.isEmpty()) {
+            System.out.println("No booking found for: " + query);
+            return;
         }
 
-        if (bookingToCancel != null) {
-            for (Room room : bookingToCancel.getRooms()) {
-                room.setAvailable(true);
+        Booking bookingToCancel = matches.get(0);
+        if (matches.size() > 1) {
+            printBookings(matches);
+            System.out.print("Enter the number of the booking to cancel (or 0 to keep all): ");
+            int choice = scanner.hasNextInt() ? scanner.nextInt() : 0;
+            if (choice < 1 || choice > matches.size()) {
+                System.out.println("No booking canceled.");
+                return;
             }
-            bookings.remove(bookingToCancel);
-            System.out.println("Booking canceled successfully.");
-        } else {
-            System.out.println("No booking found for the customer name: " + name);
+            bookingToCancel = matches.get(choice - 1);
+        }
+
+        // Removing the booking first means only one caller goes on to release its rooms.
+        if (bookings.remove(bookingToCancel.getId()) == null) {
+            System.out.println("That booking was already canceled.");
+            return;
+        }
+        try {
+            store.getBookings().cancel(bookingToCancel.getId());
+        } catch (SQLException e) {
+            bookings.put(bookingToCancel.getId(), bookingToCancel);
+            System.out.println("Error canceling booking: " + e.getMessage());
+            return;
+        }
+        for (Room room : bookingToCancel.getRooms()) {
+            rooms.setAvailable(room.getRoomNumber(), true);
+            room.setAvailable(true);
+        }
+        synchronized (bookingIndex) {
+            bookingIndex.remove(bookingToCancel);
         }
+        System.out.println("Booking canceled successfully.");
     }
 
     public void searchBookingByCustomer() {
         Scanner scanner = new Scanner(System.in);
-        System.out.print("Enter customer name to search: ");
-        String name = scanner.nextLine();
+        System.out.print("Enter customer name, contact or email to search: ");
+        String query = scanner.nextLine();
 
-        for (Booking booking : bookings) {
-            if (booking.getCustomer().getName().equalsIgnoreCase(name)) {
-                System.out.println("Booking found:\n" + booking);
-                return;
-            }
+        List<Booking> matches = findBookings(query);
+        if (matches.isEmpty()) {
+            System.out.println("No booking found for: " + query);
+        } else {
+            System.out.println(matches.size() == 1 ? "Booking found:" : matches.size() + " bookings found:");
+            printBookings(matches);
+        }
+    }
+
+    private void printBookings(List<Booking> matches) {
+        for (int i = 0; i < matches.size(); i++) {
+            System.out.println((i + 1) + ". " + matches.get(i));
         }
-        System.out.println("No booking found for the customer name: " + name);
     }
 
     public void listAllRooms() {
         System.out.println("\nAll Rooms:");
-        for (Room room : rooms) {
-            System.out.println(room);
+        for (BookingService.RoomInfo info : rooms.all()) {
+            System.out.println(toRoom(info));
         }
     }
 
@@ -177,7 +273,13 @@ class SerenitySuitesHotelManagementSystem {
         String type = scanner.nextLine();
 
         Room newRoom = new Room(roomNumber, type);
-        rooms.add(newRoom);
+        try {
+            store.getRooms().saveRoom(roomNumber, type, newRoom.getPrice());
+        } catch (SQLException e) {
+            System.out.println("Error adding room: " + e.getMessage());
+            return;
+        }
+        rooms.add(roomNumber, type, newRoom.getPrice(), true);
         System.out.println("Room added successfully: " + newRoom);
     }
 
@@ -191,7 +293,7 @@ class SerenitySuitesHotelManagementSystem {
             name = scanner.nextLine().trim();
 
             
-            if (name.matches("^[A-Z][a-z]+( [A-Z][a-z]+)+$")) {
+            if (Validators.Ruleset.CLASSIC.isValid(Validators.Field.NAME, name)) {
                 break;
             } else {
                 System.out.println("Invalid name. Please enter a valid name (e.g., John Doe). Each word should start with a capital letter and contain alphabetic characters only.");
@@ -203,7 +305,7 @@ class SerenitySuitesHotelManagementSystem {
         while (true) {
             System.out.print("Enter contact (10-digit number): ");
             contact = scanner.nextLine().trim();
-            if (contact.matches("\\d{10}")) break;
+            if (Validators.Ruleset.CLASSIC.isValid(Validators.Field.CONTACT, contact)) break;
             System.out.println("Invalid contact number. Please enter exactly 10 digits (no letters or special characters).");
         }
 
@@ -212,7 +314,7 @@ class SerenitySuitesHotelManagementSystem {
         while (true) {
             System.out.print("Enter address: ");
             address = scanner.nextLine().trim();
-            if (address.length() >= 10 && address.matches(".*[A-Za-z].*") && address.matches(".*\\d.*")) break;
+            if (Validators.Ruleset.CLASSIC.isValid(Validators.Field.ADDRESS, address)) break;
             System.out.println("Invalid address. Address must contain at least 10 characters, including letters and numbers.");
         }
 
@@ -221,7 +323,7 @@ class SerenitySuitesHotelManagementSystem {
         while (true) {
             System.out.print("Enter email: ");
             email = scanner.nextLine().trim();
-            if (email.matches("^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\\.(com|in|edu|org|net)$")) break;
+            if (Validators.Ruleset.CLASSIC.isValid(Validators.Field.EMAIL, email)) break;
             System.out.println("Invalid email. Please enter a valid email address (e.g., user@example.com).");
         }
 
@@ -230,26 +332,17 @@ class SerenitySuitesHotelManagementSystem {
 
         while (true) {
             System.out.println("\nAvailable rooms:");
-            for (Room room : rooms) {
-                if (room.isAvailable()) {
-                    System.out.println(room);
-                }
+            for (BookingService.RoomInfo info : rooms.available()) {
+                System.out.println(toRoom(info));
             }
             System.out.print("Enter room number to book (or 0 to finish): ");
             int roomNumber = scanner.nextInt();
             if (roomNumber == 0) break;
 
-            Room room = null;
-            for (Room r : rooms) {
-                if (r.getRoomNumber() == roomNumber && r.isAvailable()) {
-                    room = r;
-                    break;
-                }
-            }
+            Room room = rooms.take(roomNumber) ? findRoom(roomNumber) : null;
 
             if (room != null) {
                 bookedRooms.add(room);
-                room.setAvailable(false);
                 totalAmount += room.getPrice();
                 System.out.println("Room " + roomNumber + " booked successfully.");
             } else {
@@ -260,7 +353,26 @@ class SerenitySuitesHotelManagementSystem {
         scanner.nextLine();
 
         if (!bookedRooms.isEmpty()) {
-            bookings.add(new Booking(bookedRooms, new Customer(name, contact, address, email)));
+            int[] roomNumbers = new int[bookedRooms.size()];
+            for (int i = 0; i < roomNumbers.length; i++) {
+                roomNumbers[i] = bookedRooms.get(i).getRoomNumber();
+            }
+            long bookingId;
+            try {
+                bookingId = store.getBookings().book(new BookingRequest(roomNumbers, name, contact, address, email));
+            } catch (SQLException | RoomUnavailableException e) {
+                rooms.releaseAll(roomNumbers);
+                if (e instanceof RoomUnavailableException) {
+                    for (int taken : ((RoomUnavailableException) e).getRoomNumbers()) {
+                        if (rooms.contains(taken)) {
+                            rooms.setAvailable(taken, false);
+                        }
+                    }
+                }
+                System.out.println("Booking failed: " + e.getMessage());
+                return;
+            }
+            addBooking(new Booking(bookingId, bookedRooms, new Customer(name, contact, address, email)));
             System.out.println("\nBooking Complete!");
             System.out.println("Total Amount: " + totalAmount);
         } else {
@@ -302,6 +414,7 @@ public class Hotel18033v2 {
                     hms.addRoom();
                     break;
                 case 7:
+                    hms.close();
                     System.out.println("Thank you for using Serenity Suites!");
                     break;
                 default:
@@ -2,41 +2,47 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.sql.*;
-import java.util.Vector;
+import java.util.Arrays;
+import java.util.EnumSet;
 
 class ValidationUtils {
     public static boolean validateName(String name) {
-        return name.matches("^[A-Z][a-z]+( [A-Z][a-z]+)+$");
+        return Validators.Ruleset.DESK.isValid(Validators.Field.NAME, name);
     }
 
     public static boolean validateContact(String contact) {
-        return contact.matches("\\d{10}");
+        return Validators.Ruleset.DESK.isValid(Validators.Field.CONTACT, contact);
     }
 
     public static boolean validateEmail(String email) {
-        return email.matches("^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\\.(com|in|edu|org|net)$");
+        return Validators.Ruleset.DESK.isValid(Validators.Field.EMAIL, email);
     }
 
     public static boolean validateAddress(String address) {
-        return address.matches(".*[a-zA-Z].*[a-zA-Z].*[a-zA-Z].*");
+        return Validators.Ruleset.DESK.isValid(Validators.Field.ADDRESS, address);
+    }
+
+    public static EnumSet<Validators.Field> validateGuest(String name, String contact, String address, String email) {
+        return Validators.validate(Validators.Ruleset.DESK, name, contact, address, email);
     }
 }
 
 class HotelGUI18018 extends JFrame {
-    private Vector<Room> rooms = new Vector<>();
-    private Connection connection;
+    private volatile PersistenceConfig.Repositories store;
+    private volatile ConnectionPool pool;
+    private volatile BookingService service;
+    private final AsyncDb db = new AsyncDb("hotel-db", 5);
+    private final RoomTableModel roomModel = new RoomTableModel(db, () -> pool);
+    private final JTable roomTable = new JTable(roomModel);
+    private final JLabel statusLabel = new JLabel("Ready");
+    private final JProgressBar progressBar = new JProgressBar();
+    private final JButton btnCancelTask = new JButton("Cancel");
+    private final JButton btnReconnect = new JButton("Reconnect");
+    private JButton[] actions;
+    private AsyncDb.Task<?> cancellableTask;
+    private int runningTasks;
 
     public HotelGUI18018() {
-        try {
-            connection = DriverManager.getConnection(
-                "jdbc:mysql://sql12.freesqldatabase.com:3306/sql12751554",
-                "sql12751554", "TPnhQNVzBa"
-            );
-            initializeRooms();
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Database connection failed: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-        }
-
         setTitle("Serenity Suites Hotel Management");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setSize(600, 400);
@@ -62,37 +68,166 @@ class HotelGUI18018 extends JFrame {
 
         add(menuPanel, BorderLayout.NORTH);
 
-        JTextArea displayArea = new JTextArea();
-        displayArea.setEditable(false);
-        JScrollPane scrollPane = new JScrollPane(displayArea);
-        add(scrollPane, BorderLayout.CENTER);
-
-        btnBookRoom.addActionListener(e -> bookRoom(displayArea));
-        btnViewAvailableRooms.addActionListener(e -> viewAvailableRooms(displayArea));
-        btnListAllRooms.addActionListener(e -> listAllRooms(displayArea));
-        btnExit.addActionListener(e -> System.exit(0));
+        roomTable.setFillsViewportHeight(true);
+        roomTable.getTableHeader().setReorderingAllowed(false);
+        add(new JScrollPane(roomTable), BorderLayout.CENTER);
+
+        JPanel statusPanel = new JPanel(new BorderLayout(8, 0));
+        progressBar.setIndeterminate(true);
+        progressBar.setVisible(false);
+        btnCancelTask.setVisible(false);
+        btnCancelTask.addActionListener(e -> {
+            if (cancellableTask != null) {
+                cancellableTask.cancel();
+            }
+        });
+        btnReconnect.setVisible(false);
+        btnReconnect.addActionListener(e -> connect());
+        JPanel statusButtons = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        statusButtons.add(btnCancelTask);
+        statusButtons.add(btnReconnect);
+        statusPanel.add(statusLabel, BorderLayout.CENTER);
+        statusPanel.add(progressBar, BorderLayout.EAST);
+        statusPanel.add(statusButtons, BorderLayout.WEST);
+        add(statusPanel, BorderLayout.SOUTH);
+
+        btnBookRoom.addActionListener(e -> bookRoom());
+        btnViewAvailableRooms.addActionListener(e -> viewAvailableRooms());
+        btnListAllRooms.addActionListener(e -> listAllRooms());
+        btnExit.addActionListener(e -> {
+            if (service != null) {
+                service.close();
+            }
+            db.close();
+            if (store != null) {
+                store.close();
+            }
+            System.exit(0);
+        });
 
         setVisible(true);
+        actions = new JButton[] {btnBookRoom, btnViewAvailableRooms, btnListAllRooms};
+        connect();
     }
 
-    private void initializeRooms() {
-        try (Statement stmt = connection.createStatement()) {
-            ResultSet rs = stmt.executeQuery("SELECT * FROM rooms");
-            while (rs.next()) {
-                int roomNumber = rs.getInt("room_number");
-                String type = rs.getString("type");
-                double price = rs.getDouble("price");
-                boolean available = rs.getBoolean("available");
-                Room room = new Room(roomNumber, type, price);
-                room.setAvailable(available);
-                rooms.add(room);
+    /**
+     * Opens the store in the background with the actions disabled. If that
+     * fails or is cancelled, the actions come back and the Reconnect button
+     * offers another attempt; actions used meanwhile ask to reconnect first.
+     */
+    private void connect() {
+        for (JButton action : actions) {
+            action.setEnabled(false);
+        }
+        btnReconnect.setVisible(false);
+        AsyncDb.Task<ConnectionPool> task = runInBackground("Connecting to database...", true, cancellation -> {
+            if (store == null) {
+                PersistenceConfig config = PersistenceConfig.load(PersistenceConfig.Mode.MYSQL,
+                    "jdbc:mysql://sql12.freesqldatabase.com:3306/sql12751554?rewriteBatchedStatements=true",
+                    "sql12751554", "TPnhQNVzBa", 5
+                );
+                if (config.getMode() == PersistenceConfig.Mode.MEMORY) {
+                    throw new SQLException("The desk pages rooms from a database; set hotel.persistence to mysql or embedded");
+                }
+                PersistenceConfig.Repositories opened = config.open();
+                opened.getRooms().subscribe(new RoomChangeFeed.Listener() {
+                    @Override
+                    public void onChanges(java.util.List<RoomChangeFeed.Change> batch) {
+                        java.util.Set<Integer> rooms = new java.util.HashSet<>();
+                        for (RoomChangeFeed.Change change : batch) {
+                            rooms.add(change.getRoomNumber());
+                        }
+                        SwingUtilities.invokeLater(() -> roomModel.invalidate(rooms));
+                    }
+
+                    @Override
+                    public void onReset() {
+                        SwingUtilities.invokeLater(() -> roomModel.invalidate());
+                    }
+                });
+                service = new CachingBookingService(opened.getRooms(), opened.getBookings(), Validators.Ruleset.DESK);
+                pool = opened.getPool();
+                store = opened;
+            }
+            return pool;
+        });
+        task.onEdt(connected -> {
+            for (JButton action : actions) {
+                action.setEnabled(true);
+            }
+            listAllRooms();
+            try {
+                HotelMetrics.get().serveIfConfigured();
+            } catch (java.io.IOException e) {
+                JOptionPane.showMessageDialog(this, "Metrics endpoint not started: " + e.getMessage(), "Warning", JOptionPane.WARNING_MESSAGE);
+            }
+        }, error -> {
+            notConnected("Not connected.");
+            int choice = JOptionPane.showConfirmDialog(this, "Database connection failed: " + error.getMessage() + "\nTry again?",
+                    "Error", JOptionPane.YES_NO_OPTION, JOptionPane.ERROR_MESSAGE);
+            if (choice == JOptionPane.YES_OPTION) {
+                connect();
+            }
+        });
+        task.future().whenComplete((loaded, error) -> {
+            if (task.future().isCancelled()) {
+                SwingUtilities.invokeLater(() -> notConnected("Connection cancelled."));
             }
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error loading rooms: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        });
+    }
+
+    private void notConnected(String status) {
+        statusLabel.setText(status);
+        for (JButton action : actions) {
+            action.setEnabled(true);
+        }
+        btnReconnect.setVisible(true);
+    }
+
+    /** Returns whether the store is open; if not, offers to connect and returns {@code false}. */
+    private boolean ensureConnected() {
+        if (service != null) {
+            return true;
+        }
+        int choice = JOptionPane.showConfirmDialog(this, "Not connected to the database. Connect now?", "Not connected",
+                JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+        if (choice == JOptionPane.YES_OPTION) {
+            connect();
         }
+        return false;
     }
 
-    private void bookRoom(JTextArea displayArea) {
+    /**
+     * Runs {@code call} on the database executor while the status bar shows
+     * {@code message} and a busy indicator. Only cancellable tasks expose the
+     * Cancel button; bookings are not, since the database may already have
+     * committed them.
+     */
+    private <T> AsyncDb.Task<T> runInBackground(String message, boolean cancellable, AsyncDb.Call<T> call) {
+        AsyncDb.Task<T> task = db.submit(call);
+        runningTasks++;
+        statusLabel.setText(message);
+        progressBar.setVisible(true);
+        if (cancellable) {
+            cancellableTask = task;
+            btnCancelTask.setVisible(true);
+        }
+        task.future().whenComplete((value, error) -> SwingUtilities.invokeLater(() -> {
+            if (cancellableTask == task) {
+                cancellableTask = null;
+                btnCancelTask.setVisible(false);
+            }
+            if (--runningTasks == 0) {
+                progressBar.setVisible(false);
+            }
+        }));
+        return task;
+    }
+
+    private void bookRoom() {
+        if (!ensureConnected()) {
+            return;
+        }
         JDialog bookingDialog = new JDialog(this, "Book Room", true);
         bookingDialog.setSize(400, 350);
         bookingDialog.setLayout(new GridLayout(7, 2));
@@ -101,13 +236,7 @@ class HotelGUI18018 extends JFrame {
         JTextField txtContact = new JTextField();
         JTextField txtAddress = new JTextField();
         JTextField txtEmail = new JTextField();
-        JComboBox<String> roomSelection = new JComboBox<>(); 
-
-        for (Room room : rooms) {
-            if (room.isAvailable()) {
-                roomSelection.addItem("Room " + room.getRoomNumber() + " (" + room.getType() + ")");
-            }
-        }
+        JTextField txtRooms = new JTextField(selectedRoomNumbers());
 
         JButton btnBook = new JButton("Book");
         JButton btnCancel = new JButton("Cancel");
@@ -120,8 +249,8 @@ class HotelGUI18018 extends JFrame {
         bookingDialog.add(txtAddress);
         bookingDialog.add(new JLabel("Email:"));
         bookingDialog.add(txtEmail);
-        bookingDialog.add(new JLabel("Select Room(s):"));
-        bookingDialog.add(roomSelection);
+        bookingDialog.add(new JLabel("Room number(s):"));
+        bookingDialog.add(txtRooms);
         bookingDialog.add(btnBook);
         bookingDialog.add(btnCancel);
 
@@ -131,135 +260,117 @@ class HotelGUI18018 extends JFrame {
             String contact = txtContact.getText().trim();
             String address = txtAddress.getText().trim();
             String email = txtEmail.getText().trim();
-            String selectedRoom = (String) roomSelection.getSelectedItem();
-
-            if (!ValidationUtils.validateName(name)) {
-                JOptionPane.showMessageDialog(bookingDialog, "Invalid name. Enter in 'Firstname Lastname' format.", "Validation Error", JOptionPane.ERROR_MESSAGE);
-                return;
-            }
+            int[] roomNumbers = parseRoomNumbers(txtRooms.getText());
 
-            if (!ValidationUtils.validateContact(contact)) {
-                JOptionPane.showMessageDialog(bookingDialog, "Invalid contact. Enter a valid 10-digit number.", "Validation Error", JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-
-            if (!ValidationUtils.validateEmail(email)) {
-                JOptionPane.showMessageDialog(bookingDialog, "Invalid email. Enter a valid email address.", "Validation Error", JOptionPane.ERROR_MESSAGE);
-                return;
-            }
-
-            if (!ValidationUtils.validateAddress(address)) {
-                JOptionPane.showMessageDialog(bookingDialog, "Invalid address. Enter at least 3 letters.", "Validation Error", JOptionPane.ERROR_MESSAGE);
+            EnumSet<Validators.Field> invalid = ValidationUtils.validateGuest(name, contact, address, email);
+            if (!invalid.isEmpty()) {
+                StringBuilder errors = new StringBuilder();
+                if (invalid.contains(Validators.Field.NAME)) {
+                    errors.append("Invalid name. Enter in 'Firstname Lastname' format.\n");
+                }
+                if (invalid.contains(Validators.Field.CONTACT)) {
+                    errors.append("Invalid contact. Enter a valid 10-digit number.\n");
+                }
+                if (invalid.contains(Validators.Field.EMAIL)) {
+                    errors.append("Invalid email. Enter a valid email address.\n");
+                }
+                if (invalid.contains(Validators.Field.ADDRESS)) {
+                    errors.append("Invalid address. Enter at least 3 letters.\n");
+                }
+                JOptionPane.showMessageDialog(bookingDialog, errors.toString().trim(), "Validation Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
 
-            if (selectedRoom == null) {
-                JOptionPane.showMessageDialog(bookingDialog, "No room selected. Please choose a room.", "Validation Error", JOptionPane.ERROR_MESSAGE);
+            if (roomNumbers == null) {
+                JOptionPane.showMessageDialog(bookingDialog, "Enter one or more room numbers separated by commas, or select rooms in the table.", "Validation Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
 
-            Room room = null;
-            for (Room r : rooms) {
-                if (selectedRoom.contains("Room " + r.getRoomNumber())) {
-                    room = r;
-                    break;
-                }
-            }
-
-            if (room != null) {
-                room.setAvailable(false);
-                updateRoomAvailability(room.getRoomNumber(), false);
-                saveBooking(room, new Customer(name, contact, address, email));
-                displayArea.append("Room " + room.getRoomNumber() + " booked successfully for " + name + ".\n");
+            btnBook.setEnabled(false);
+            btnCancel.setEnabled(false);
+            saveBooking(roomNumbers, new Customer(name, contact, address, email)).onEdt(saved -> {
+                roomModel.refresh(roomModel.isAvailableOnly());
+                statusLabel.setText(saved);
                 bookingDialog.dispose();
-            } else {
-                JOptionPane.showMessageDialog(bookingDialog, "Room booking failed. Try again.", "Error", JOptionPane.ERROR_MESSAGE);
-            }
+            }, error -> {
+                btnBook.setEnabled(true);
+                btnCancel.setEnabled(true);
+                statusLabel.setText("Booking failed.");
+                if (error instanceof RoomUnavailableException) {
+                    roomModel.refresh(roomModel.isAvailableOnly());
+                    JOptionPane.showMessageDialog(bookingDialog, error.getMessage() + ". Please choose other rooms.", "Error", JOptionPane.ERROR_MESSAGE);
+                } else {
+                    JOptionPane.showMessageDialog(bookingDialog, "Error saving booking: " + error.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            });
         });
 
         bookingDialog.setVisible(true);
     }
 
-    private void updateRoomAvailability(int roomNumber, boolean available) {
-        try (PreparedStatement stmt = connection.prepareStatement("UPDATE rooms SET available = ? WHERE room_number = ?")) {
-            stmt.setBoolean(1, available);
-            stmt.setInt(2, roomNumber);
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error updating room availability: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-        }
-    }
-
-    private void saveBooking(Room room, Customer customer) {
-        try (PreparedStatement stmt = connection.prepareStatement("INSERT INTO bookings (customer_name, contact, address, email, rooms) VALUES (?, ?, ?, ?, ?)")) {
-            stmt.setString(1, customer.getName());
-            stmt.setString(2, customer.getContact());
-            stmt.setString(3, customer.getAddress());
-            stmt.setString(4, customer.getEmail());
-            stmt.setString(5, String.valueOf(room.getRoomNumber())); // Single room number stored as a string
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(this, "Error saving booking: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-        }
+    /**
+     * Books the rooms and returns the status line to show, with their nightly
+     * list price when it can be read. The price comes from one query on the
+     * booked rooms, as in the table's Price column, so saving never loads the
+     * whole room table into the service.
+     */
+    private AsyncDb.Task<String> saveBooking(int[] roomNumbers, Customer customer) {
+        BookingRequest request = new BookingRequest(roomNumbers, customer.getName(), customer.getContact(), customer.getAddress(), customer.getEmail());
+        return runInBackground("Booking room(s) " + Arrays.toString(roomNumbers) + "...", false, cancellation -> {
+            long bookingId = service.book(request);
+            String saved = "Booking #" + bookingId + " saved: room(s) " + Arrays.toString(roomNumbers) + " for " + customer.getName();
+            try {
+                return saved + " at " + roomModel.listPrice(request.getRoomNumbers()) + " per night.";
+            } catch (SQLException | IllegalArgumentException e) {
+                return saved + ".";
+            }
+        });
     }
 
-    private void viewAvailableRooms(JTextArea displayArea) {
-        displayArea.setText("Available Rooms:\n");
-        for (Room room : rooms) {
-            if (room.isAvailable()) {
-                displayArea.append(room + "\n");
+    /** Room numbers of the selected table rows whose pages are loaded, as "101, 102". */
+    private String selectedRoomNumbers() {
+        StringBuilder selected = new StringBuilder();
+        for (int row : roomTable.getSelectedRows()) {
+            int roomNumber = roomModel.roomNumberAt(roomTable.convertRowIndexToModel(row));
+            if (roomNumber >= 0) {
+                selected.append(selected.length() == 0 ? "" : ", ").append(roomNumber);
             }
         }
+        return selected.toString();
     }
 
-    private void listAllRooms(JTextArea displayArea) {
-        displayArea.setText("All Rooms:\n");
-        for (Room room : rooms) {
-            displayArea.append(room + "\n");
+    private static int[] parseRoomNumbers(String text) {
+        String[] parts = text.split(",");
+        int[] roomNumbers = new int[parts.length];
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                roomNumbers[i] = Integer.parseInt(parts[i].trim());
+            }
+        } catch (NumberFormatException e) {
+            return null;
         }
+        return roomNumbers;
     }
 
-    public static void main(String[] args) {
-        SwingUtilities.invokeLater(HotelGUI18018::new);
-    }
-}
-
-class Room {
-    private int roomNumber;
-    private String type;
-    private double price;
-    private boolean available;
-
-    public Room(int roomNumber, String type, double price) {
-        this.roomNumber = roomNumber;
-        this.type = type;
-        this.price = price;
-        this.available = true;
-    }
-
-    public int getRoomNumber() {
-        return roomNumber;
+    private void viewAvailableRooms() {
+        showRooms(true, "Available rooms");
     }
 
-    public String getType() {
-        return type;
+    private void listAllRooms() {
+        showRooms(false, "All rooms");
     }
 
-    public double getPrice() {
-        return price;
-    }
-
-    public boolean isAvailable() {
-        return available;
-    }
-
-    public void setAvailable(boolean available) {
-        this.available = available;
+    private void showRooms(boolean availableOnly, String title) {
+        if (!ensureConnected()) {
+            return;
+        }
+        roomModel.refresh(availableOnly).onEdt(
+            starts -> statusLabel.setText(title + ": " + starts[starts.length - 1] + "."),
+            error -> statusLabel.setText("Could not load rooms: " + error.getMessage()));
     }
 
-    @Override
-    public String toString() {
-        return "Room " + roomNumber + " (" + type + ") - $" + price + " - " + (available ? "Available" : "Booked");
+    public static void main(String[] args) {
+        SwingUtilities.invokeLater(HotelGUI18018::new);
     }
 }
 
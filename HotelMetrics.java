@@ -0,0 +1,320 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Process-wide counters, gauges and latency histograms for the booking
+ * paths. Every metric is published two ways: as attributes of the
+ * {@code serenity.suites:type=Metrics} MBean, for jconsole and other JMX
+ * tools, and in the Prometheus text format, either from
+ * {@link #writePrometheus} or from a loopback {@code /metrics} endpoint
+ * started when the {@value #PORT} system property names a port.
+ *
+ * <p>Metrics are registered once by name and live as long as the process;
+ * registering a name again returns the existing counter or histogram, and
+ * replaces a gauge's source. A gauge is removed by the source that set it,
+ * so a closed component stops being reported and referenced. Histograms are reported as summaries with the
+ * 50th, 90th, 99th and 99.9th percentiles in seconds.
+ */
+public final class HotelMetrics {
+    public static final String PORT = "hotel.metrics.port";
+
+    public static final String BOOK_SECONDS = "hotel_book_seconds";
+    public static final String CANCEL_SECONDS = "hotel_cancel_seconds";
+    public static final String SEARCH_SECONDS = "hotel_search_seconds";
+    public static final String ROOM_LOAD_SECONDS = "hotel_room_load_seconds";
+    public static final String ROOM_CHANGES_SECONDS = "hotel_room_changes_seconds";
+    public static final String PIPELINE_BATCH_SECONDS = "hotel_pipeline_batch_seconds";
+    public static final String PIPELINE_FALLBACKS = "hotel_pipeline_fallbacks_total";
+    public static final String BOOKINGS = "hotel_bookings_total";
+    public static final String BOOKING_FAILURES = "hotel_booking_failures_total";
+    public static final String BOOKING_CONFLICTS = "hotel_booking_conflicts_total";
+    public static final String CANCELLATIONS = "hotel_cancellations_total";
+    public static final String DB_ERRORS = "hotel_db_errors_total";
+    public static final String ROOMS_AVAILABLE = "hotel_rooms_available";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] QUANTILE_NAMES = {"p50", "p90", "p99", "p999"};
+    private static final HotelMetrics INSTANCE = new HotelMetrics();
+
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    private static final class Metric {
+        private final String help;
+        private final Object source;
+
+        Metric(String help, Object source) {
+            this.help = help;
+            this.source = source;
+        }
+    }
+
+    private final Map<String, Metric> metrics = new ConcurrentSkipListMap<>();
+    private HttpServer endpoint;
+
+    private HotelMetrics() {
+        histogram(BOOK_SECONDS, "Time to validate and save a booking");
+        histogram(CANCEL_SECONDS, "Time to cancel a booking");
+        histogram(SEARCH_SECONDS, "Time to search bookings by guest");
+        histogram(ROOM_LOAD_SECONDS, "Time to load rooms and active stays into the cache");
+        histogram(ROOM_CHANGES_SECONDS, "Time to apply a batch of room changes to the cache");
+        histogram(PIPELINE_BATCH_SECONDS, "Time to write one batch of bulk bookings");
+        counter(BOOKINGS, "Bookings saved");
+        counter(BOOKING_FAILURES, "Bookings rejected or not saved, for any reason");
+        counter(BOOKING_CONFLICTS, "Bookings rejected because a room was already taken");
+        counter(CANCELLATIONS, "Bookings cancelled");
+        counter(DB_ERRORS, "Storage errors on any booking path");
+        counter(PIPELINE_FALLBACKS, "Bulk booking batches that lost a room race and were replayed one by one");
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("serenity.suites:type=Metrics");
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MetricsBean(), name);
+            }
+        } catch (JMException | SecurityException e) {
+            // Metrics still count and can be scraped; only the JMX view is missing.
+        }
+    }
+
+    public static HotelMetrics get() {
+        return INSTANCE;
+    }
+
+    public Counter counter(String name, String help) {
+        return (Counter) metrics.computeIfAbsent(name, n -> new Metric(help, new Counter())).source;
+    }
+
+    public Counter counter(String name) {
+        return counter(name, name);
+    }
+
+    public LatencyHistogram histogram(String name, String help) {
+        return (LatencyHistogram) metrics.computeIfAbsent(name, n -> new Metric(help, new LatencyHistogram())).source;
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return histogram(name, name);
+    }
+
+    /**
+     * Publishes a gauge whose values are read when metrics are collected, one
+     * series per entry of the map, labelled {@code label="key"}.
+     */
+    public void gauge(String name, String help, String label, Supplier<Map<String, ? extends Number>> values) {
+        metrics.put(name, new Metric(help, new LabelledGauge(label, values)));
+    }
+
+    /** Removes the gauge {@code name} if {@code values} is still its source; a newer source is left in place. */
+    public void removeGauge(String name, Supplier<Map<String, ? extends Number>> values) {
+        metrics.computeIfPresent(name, (n, metric) ->
+                metric.source instanceof LabelledGauge && ((LabelledGauge) metric.source).values == values ? null : metric);
+    }
+
+    private static final class LabelledGauge {
+        private final String label;
+        private final Supplier<Map<String, ? extends Number>> values;
+
+        LabelledGauge(String label, Supplier<Map<String, ? extends Number>> values) {
+            this.label = label;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Starts the {@code /metrics} endpoint on the loopback interface if the
+     * {@value #PORT} system property is set; does nothing when it is not, or
+     * when the endpoint is already running.
+     *
+     * @return the port served, or -1
+     */
+    public synchronized int serveIfConfigured() throws IOException {
+        String port = System.getProperty(PORT);
+        if (endpoint == null && port != null && !port.trim().isEmpty()) {
+            endpoint = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(port.trim())), 16);
+            endpoint.createContext("/metrics", exchange -> {
+                try {
+                    sendPrometheus(exchange);
+                } finally {
+                    exchange.close();
+                }
+            });
+            endpoint.start();
+        }
+        return endpoint == null ? -1 : endpoint.getAddress().getPort();
+    }
+
+    /** Stops the {@code /metrics} endpoint, if it is running, so it does not keep the process alive. */
+    public synchronized void stopServing() {
+        if (endpoint != null) {
+            endpoint.stop(0);
+            endpoint = null;
+        }
+    }
+
+    /** Answers a scrape on {@code exchange}; used by any HTTP server that wants to expose {@code /metrics}. */
+    void sendPrometheus(HttpExchange exchange) throws IOException {
+        StringBuilder text = new StringBuilder(4096);
+        writePrometheus(text);
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /** Appends every metric in the Prometheus text exposition format. */
+    public void writePrometheus(StringBuilder out) {
+        for (Map.Entry<String, Metric> entry : metrics.entrySet()) {
+            String name = entry.getKey();
+            Metric metric = entry.getValue();
+            out.append("# HELP ").append(name).append(' ').append(metric.help).append('\n');
+            if (metric.source instanceof Counter) {
+                out.append("# TYPE ").append(name).append(" counter\n");
+                out.append(name).append(' ').append(((Counter) metric.source).get()).append('\n');
+            } else if (metric.source instanceof LatencyHistogram) {
+                LatencyHistogram histogram = (LatencyHistogram) metric.source;
+                out.append("# TYPE ").append(name).append(" summary\n");
+                for (double quantile : QUANTILES) {
+                    out.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                            .append(seconds(histogram.valueAtPercentile(quantile * 100))).append('\n');
+                }
+                out.append(name).append("_sum ").append(seconds(histogram.getSumNanos())).append('\n');
+                out.append(name).append("_count ").append(histogram.getCount()).append('\n');
+            } else {
+                LabelledGauge gauge = (LabelledGauge) metric.source;
+                out.append("# TYPE ").append(name).append(" gauge\n");
+                for (Map.Entry<String, ? extends Number> series : readGauge(gauge).entrySet()) {
+                    out.append(name).append('{').append(gauge.label).append("=\"").append(escape(series.getKey())).append("\"} ")
+                            .append(series.getValue()).append('\n');
+                }
+            }
+        }
+    }
+
+    private static Map<String, ? extends Number> readGauge(LabelledGauge gauge) {
+        try {
+            Map<String, ? extends Number> values = gauge.values.get();
+            return values == null ? Map.of() : values;
+        } catch (RuntimeException e) {
+            // A gauge whose source is not ready yet, e.g. a cache not loaded, reports no series.
+            return Map.of();
+        }
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Flattens the metrics into JMX attributes: a counter is one attribute, a
+     * histogram one per percentile plus count and max in microseconds, and a
+     * gauge one per series.
+     */
+    private final class MetricsBean implements DynamicMBean {
+        private Map<String, Object> values() {
+            Map<String, Object> values = new ConcurrentSkipListMap<>();
+            for (Map.Entry<String, Metric> entry : metrics.entrySet()) {
+                String name = entry.getKey();
+                Object source = entry.getValue().source;
+                if (source instanceof Counter) {
+                    values.put(name, ((Counter) source).get());
+                } else if (source instanceof LatencyHistogram) {
+                    LatencyHistogram histogram = (LatencyHistogram) source;
+                    values.put(name + "_count", histogram.getCount());
+                    for (int i = 0; i < QUANTILES.length; i++) {
+                        values.put(name + "_" + QUANTILE_NAMES[i] + "_micros", histogram.valueAtPercentile(QUANTILES[i] * 100) / 1000);
+                    }
+                    values.put(name + "_max_micros", histogram.getMaxNanos() / 1000);
+                } else {
+                    for (Map.Entry<String, ? extends Number> series : readGauge((LabelledGauge) source).entrySet()) {
+                        values.put(name + "_" + series.getKey(), series.getValue().doubleValue());
+                    }
+                }
+            }
+            return values;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Object value = values().get(attribute);
+            if (value == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return value;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Object> values = values();
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                if (values.containsKey(attribute)) {
+                    list.add(new Attribute(attribute, values.get(attribute)));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName), "The metrics bean has no operations");
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (Map.Entry<String, Object> value : values().entrySet()) {
+                attributes.add(new MBeanAttributeInfo(value.getKey(), value.getValue().getClass().getName(),
+                        value.getKey(), true, false, false));
+            }
+            return new MBeanInfo(HotelMetrics.class.getName(), "Serenity Suites booking metrics",
+                    attributes.toArray(new MBeanAttributeInfo[0]), null, null, null);
+        }
+    }
+}
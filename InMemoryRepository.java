@@ -0,0 +1,499 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Rooms and bookings held in this process only, with the same rules as the
+ * database: a booking takes all of its rooms or none, open-ended stays hold
+ * the room, and every change bumps the room's version. Meant for
+ * single-process deployments and for running without a database.
+ *
+ * <p>With a {@link BookingJournal}, every change is journaled and on disk
+ * before the call returns, and the state is restored from the journal on
+ * startup. A change is applied under the lock when it is appended, so later
+ * writers check against it, and reaches listeners only once it is synced.
+ * If the sync fails the change is undone and the call fails, so memory
+ * never holds a change the journal was not seen to keep. Listeners hear of
+ * changes in the order they were made, whichever writer's sync finishes
+ * first, and a writer's own changes before its call returns.
+ */
+public class InMemoryRepository implements RoomRepository, BookingRepository {
+    private static final int SNAPSHOT_EVERY = 100_000;
+
+    private static final class StoredRoom {
+        private String type;
+        private double price;
+        private boolean available = true;
+        private int version;
+    }
+
+    private static final class StoredBooking {
+        private final BookingRecord record;
+        private final LocalDate checkIn;
+        private final LocalDate checkOut;
+
+        StoredBooking(BookingRecord record, LocalDate checkIn, LocalDate checkOut) {
+            this.record = record;
+            this.checkIn = checkIn;
+            this.checkOut = checkOut;
+        }
+
+        boolean overlaps(BookingRequest request) {
+            return request.overlaps(checkIn, checkOut);
+        }
+
+        BookingRequest toRequest() {
+            return new BookingRequest(record.getRoomNumbers(), record.getName(), record.getContact(), record.getAddress(),
+                    record.getEmail(), checkIn, checkOut);
+        }
+    }
+
+    /** Changes made under the lock, waiting for their writer's sync before they can reach listeners. */
+    private static final class Publication {
+        private final List<RoomChangeFeed.Change> changes;
+        private boolean settled;
+        private boolean undone;
+        private boolean delivered;
+
+        Publication(List<RoomChangeFeed.Change> changes) {
+            this.changes = changes;
+        }
+    }
+
+    private final TreeMap<Integer, StoredRoom> rooms = new TreeMap<>();
+    private final Map<Long, StoredBooking> bookings = new LinkedHashMap<>();
+    private final Map<Integer, List<StoredBooking>> staysByRoom = new HashMap<>();
+    private final PrefixIndex<BookingRecord> index = new PrefixIndex<>();
+    private final List<RoomChangeFeed.Listener> listeners = new CopyOnWriteArrayList<>();
+    private final BookingJournal journal;
+    private final ArrayDeque<Publication> unpublished = new ArrayDeque<>();
+    private final Object publisher = new Object();
+    private long nextBookingId = 1;
+    private long nextChangeId = 1;
+
+    /** Keeps everything in memory only; it is gone when the process ends. */
+    public InMemoryRepository() {
+        journal = null;
+    }
+
+    /** Restores rooms and bookings from the journal in {@code journalDirectory} and keeps journaling there. */
+    public InMemoryRepository(Path journalDirectory) throws IOException {
+        journal = BookingJournal.open(journalDirectory, new BookingJournal.Handler() {
+            @Override
+            public void roomSaved(int roomNumber, String type, double price) {
+                applySaveRoom(roomNumber, type, price);
+            }
+
+            @Override
+            public void booked(long bookingId, BookingRequest request) {
+                applyBook(bookingId, request);
+            }
+
+            @Override
+            public void cancelled(long bookingId) {
+                applyCancel(bookingId);
+            }
+        });
+        if (journal.getEventsSinceSnapshot() >= SNAPSHOT_EVERY) {
+            snapshot();
+        }
+    }
+
+    @Override
+    public int forEachRoom(RoomLoader.RoomRow consumer) {
+        List<Object[]> snapshot = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<Integer, StoredRoom> entry : rooms.entrySet()) {
+                StoredRoom room = entry.getValue();
+                snapshot.add(new Object[] {entry.getKey(), room.type, room.price, room.available, room.version});
+            }
+        }
+        for (Object[] row : snapshot) {
+            consumer.accept((Integer) row[0], (String) row[1], (Double) row[2], (Boolean) row[3], (Integer) row[4]);
+        }
+        return snapshot.size();
+    }
+
+    @Override
+    public void saveRoom(int roomNumber, String type, double price) throws SQLException {
+        Publication publication;
+        Runnable undo;
+        long position = 0;
+        synchronized (this) {
+            if (journal != null) {
+                try {
+                    position = journal.appendRoom(roomNumber, type, price);
+                } catch (IOException e) {
+                    throw journalFailure(e);
+                }
+            }
+            StoredRoom previous = rooms.get(roomNumber);
+            String previousType = previous == null ? null : previous.type;
+            double previousPrice = previous == null ? 0 : previous.price;
+            undo = () -> {
+                if (previous == null) {
+                    rooms.remove(roomNumber);
+                } else {
+                    previous.type = previousType;
+                    previous.price = previousPrice;
+                }
+            };
+            publication = enqueue(List.of(applySaveRoom(roomNumber, type, price)));
+        }
+        committed(position, publication, undo);
+    }
+
+    @Override
+    public void subscribe(RoomChangeFeed.Listener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public long book(BookingRequest request) throws SQLException, RoomUnavailableException {
+        Publication publication;
+        long bookingId;
+        long position = 0;
+        synchronized (this) {
+            checkBookable(request);
+            bookingId = nextBookingId;
+            if (journal != null) {
+                try {
+                    position = journal.appendBooking(bookingId, request);
+                } catch (IOException e) {
+                    throw journalFailure(e);
+                }
+            }
+            publication = enqueue(applyBook(bookingId, request));
+        }
+        committed(position, publication, () -> applyCancel(bookingId));
+        return bookingId;
+    }
+
+    /** Books the batch under one lock and waits for a single journal force for all of it. */
+    @Override
+    public long[] bookAll(List<BookingRequest> requests, Exception[] failures) throws SQLException {
+        long[] ids = new long[requests.size()];
+        List<RoomChangeFeed.Change> changes = new ArrayList<>();
+        Publication publication;
+        long position = 0;
+        synchronized (this) {
+            for (int i = 0; i < ids.length; i++) {
+                BookingRequest request = requests.get(i);
+                ids[i] = -1;
+                try {
+                    checkBookable(request);
+                    long bookingId = nextBookingId;
+                    if (journal != null) {
+                        position = journal.appendBooking(bookingId, request);
+                    }
+                    changes.addAll(applyBook(bookingId, request));
+                    ids[i] = bookingId;
+                } catch (RoomUnavailableException | IllegalArgumentException e) {
+                    failures[i] = e;
+                } catch (IOException e) {
+                    failures[i] = journalFailure(e);
+                }
+            }
+            publication = enqueue(changes);
+        }
+        committed(position, publication, () -> {
+            for (int i = ids.length - 1; i >= 0; i--) {
+                if (ids[i] >= 0) {
+                    applyCancel(ids[i]);
+                }
+            }
+        });
+        return ids;
+    }
+
+    /** Must hold the lock. */
+    private void checkBookable(BookingRequest request) throws RoomUnavailableException {
+        int[] roomNumbers = request.getRoomNumbers();
+        if (roomNumbers.length == 0) {
+            throw new IllegalArgumentException("A booking needs at least one room");
+        }
+        int[] unavailable = Arrays.stream(roomNumbers).filter(roomNumber -> {
+            StoredRoom room = rooms.get(roomNumber);
+            return room == null || !room.available
+                    || staysByRoom.getOrDefault(roomNumber, List.of()).stream().anyMatch(stay -> stay.overlaps(request));
+        }).toArray();
+        if (unavailable.length > 0) {
+            throw new RoomUnavailableException(unavailable);
+        }
+    }
+
+    @Override
+    public boolean cancel(long bookingId) throws SQLException {
+        Publication publication;
+        StoredBooking booking;
+        long position = 0;
+        synchronized (this) {
+            booking = bookings.get(bookingId);
+            if (booking == null) {
+                return false;
+            }
+            if (journal != null) {
+                try {
+                    position = journal.appendCancel(bookingId);
+                } catch (IOException e) {
+                    throw journalFailure(e);
+                }
+            }
+            publication = enqueue(applyCancel(bookingId));
+        }
+        committed(position, publication, () -> applyBook(bookingId, booking.toRequest()));
+        return true;
+    }
+
+    private RoomChangeFeed.Change applySaveRoom(int roomNumber, String type, double price) {
+        StoredRoom room = rooms.computeIfAbsent(roomNumber, n -> new StoredRoom());
+        room.type = type;
+        room.price = price;
+        room.version++;
+        return new RoomChangeFeed.Change(nextChangeId++, roomNumber, room.available, room.version, RoomChangeFeed.UPDATE, null, null);
+    }
+
+    private List<RoomChangeFeed.Change> applyBook(long bookingId, BookingRequest request) {
+        int[] roomNumbers = request.getRoomNumbers();
+        nextBookingId = Math.max(nextBookingId, bookingId + 1);
+        BookingRecord record = new BookingRecord(bookingId, request.getName(), request.getContact(), request.getAddress(),
+                request.getEmail(), roomNumbers);
+        StoredBooking booking = new StoredBooking(record, request.getCheckIn(), request.getCheckOut());
+        bookings.put(bookingId, booking);
+        index.add(record, record.getName(), record.getContact(), record.getEmail());
+        List<RoomChangeFeed.Change> changes = new ArrayList<>(roomNumbers.length);
+        for (int roomNumber : roomNumbers) {
+            staysByRoom.computeIfAbsent(roomNumber, n -> new ArrayList<>()).add(booking);
+            StoredRoom room = rooms.computeIfAbsent(roomNumber, n -> new StoredRoom());
+            room.available = !request.isOpenEnded();
+            room.version++;
+            changes.add(new RoomChangeFeed.Change(nextChangeId++, roomNumber, room.available, room.version,
+                    RoomChangeFeed.BOOK, request.getCheckIn(), request.getCheckOut()));
+        }
+        return changes;
+    }
+
+    private List<RoomChangeFeed.Change> applyCancel(long bookingId) {
+        List<RoomChangeFeed.Change> changes = new ArrayList<>();
+        StoredBooking booking = bookings.remove(bookingId);
+        if (booking == null) {
+            return changes;
+        }
+        index.remove(booking.record);
+        for (int roomNumber : booking.record.getRoomNumbers()) {
+            staysByRoom.get(roomNumber).remove(booking);
+            StoredRoom room = rooms.get(roomNumber);
+            if (room == null) {
+                // Only while undoing a room save whose journal write failed.
+                continue;
+            }
+            room.available |= booking.checkOut == null;
+            room.version++;
+            changes.add(new RoomChangeFeed.Change(nextChangeId++, roomNumber, room.available, room.version,
+                    RoomChangeFeed.CANCEL, booking.checkIn, booking.checkOut));
+        }
+        return changes;
+    }
+
+    /** Must hold the lock, so publications queue in the order their changes were made. */
+    private Publication enqueue(List<RoomChangeFeed.Change> changes) {
+        Publication publication = new Publication(changes);
+        unpublished.add(publication);
+        return publication;
+    }
+
+    /**
+     * Waits for the journal to reach {@code position}, then tells listeners.
+     * If it cannot, runs {@code undo} under the lock and fails; listeners
+     * never hear of the change.
+     */
+    private void committed(long position, Publication publication, Runnable undo) throws SQLException {
+        if (journal != null) {
+            try {
+                journal.sync(position);
+            } catch (IOException e) {
+                synchronized (this) {
+                    undo.run();
+                    publication.undone = true;
+                    publication.settled = true;
+                }
+                publishThrough(publication);
+                throw journalFailure(e);
+            }
+            if (journal.getEventsSinceSnapshot() >= SNAPSHOT_EVERY) {
+                snapshot();
+            }
+        }
+        synchronized (this) {
+            publication.settled = true;
+        }
+        publishThrough(publication);
+    }
+
+    /**
+     * Delivers settled publications from the head of the queue until
+     * {@code mine} has gone. Only one thread delivers at a time; one whose
+     * changes sit behind a writer still syncing waits for that writer to
+     * deliver its own, so a room's changes always arrive in version order.
+     */
+    private void publishThrough(Publication mine) {
+        boolean interrupted = false;
+        synchronized (publisher) {
+            while (!mine.delivered) {
+                Publication next;
+                synchronized (this) {
+                    next = unpublished.peek();
+                    if (next != null && next.settled) {
+                        unpublished.poll();
+                    } else {
+                        next = null;
+                    }
+                }
+                if (next == null) {
+                    try {
+                        publisher.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                    continue;
+                }
+                if (!next.undone && !next.changes.isEmpty()) {
+                    publish(next.changes);
+                }
+                next.delivered = true;
+                publisher.notifyAll();
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static SQLException journalFailure(IOException e) {
+        return new SQLException("Could not write the booking journal: " + e.getMessage(), e);
+    }
+
+    /**
+     * Captures the rooms and live bookings and writes them as the journal's
+     * new snapshot on a background thread, so later restarts replay only the
+     * events after it.
+     */
+    private void snapshot() {
+        long cut;
+        List<Object[]> roomState = new ArrayList<>();
+        List<StoredBooking> bookingState;
+        synchronized (this) {
+            try {
+                cut = journal.beginSnapshot();
+            } catch (IOException e) {
+                System.out.println("Journal snapshot failed: " + e.getMessage());
+                return;
+            }
+            if (cut < 0) {
+                return;
+            }
+            for (Map.Entry<Integer, StoredRoom> entry : rooms.entrySet()) {
+                roomState.add(new Object[] {entry.getKey(), entry.getValue().type, entry.getValue().price});
+            }
+            bookingState = new ArrayList<>(bookings.values());
+        }
+        Thread writer = new Thread(() -> {
+            try {
+                journal.writeSnapshot(cut, out -> {
+                    for (Object[] room : roomState) {
+                        out.roomSaved((Integer) room[0], (String) room[1], (Double) room[2]);
+                    }
+                    for (StoredBooking booking : bookingState) {
+                        BookingRecord record = booking.record;
+                        out.booked(record.getId(), new BookingRequest(record.getRoomNumbers(), record.getName(),
+                                record.getContact(), record.getAddress(), record.getEmail(), booking.checkIn, booking.checkOut));
+                    }
+                });
+            } catch (IOException e) {
+                System.out.println("Journal snapshot failed: " + e.getMessage());
+            }
+        }, "journal-snapshot");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public synchronized List<BookingRecord> search(String query, int limit) {
+        List<BookingRecord> matches = index.search(query);
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    @Override
+    public void forEachBooking(Consumer<BookingRecord> consumer) {
+        List<BookingRecord> snapshot = new ArrayList<>();
+        synchronized (this) {
+            for (StoredBooking booking : bookings.values()) {
+                snapshot.add(booking.record);
+            }
+        }
+        snapshot.forEach(consumer);
+    }
+
+    /** Cancelled bookings are not kept in memory, so only live ones are passed. */
+    @Override
+    public void forEachBookingRow(BookingDao.BookingRow consumer) {
+        List<StoredBooking> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(bookings.values());
+        }
+        for (StoredBooking booking : snapshot) {
+            consumer.accept(booking.record, booking.checkIn, booking.checkOut, null);
+        }
+    }
+
+    @Override
+    public void forEachActiveStay(BookingDao.StayConsumer consumer) {
+        LocalDate today = LocalDate.now();
+        List<StoredBooking> active = new ArrayList<>();
+        synchronized (this) {
+            for (StoredBooking booking : bookings.values()) {
+                if (booking.checkOut == null || booking.checkOut.isAfter(today)) {
+                    active.add(booking);
+                }
+            }
+        }
+        for (StoredBooking booking : active) {
+            for (int roomNumber : booking.record.getRoomNumbers()) {
+                consumer.accept(roomNumber, booking.checkIn, booking.checkOut);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /** Tells each listener; one that throws is reset, as {@link RoomChangeFeed} does, so the rest still hear. */
+    private void publish(List<RoomChangeFeed.Change> changes) {
+        for (RoomChangeFeed.Listener listener : listeners) {
+            try {
+                listener.onChanges(changes);
+            } catch (RuntimeException e) {
+                try {
+                    listener.onReset();
+                } catch (RuntimeException ignored) {
+                    // Its state stays stale until the next reset.
+                }
+            }
+        }
+    }
+}
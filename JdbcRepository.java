@@ -0,0 +1,180 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Rooms and bookings in a MySQL-compatible database: MySQL itself, or an
+ * embedded database running in MySQL mode. Other instances' changes arrive
+ * through a {@link RoomChangeFeed} started on the first subscription. The
+ * pool is borrowed, not owned.
+ */
+public class JdbcRepository implements RoomRepository, BookingRepository {
+    private static final long POLL_MILLIS = 1000;
+    private static final int BULK_BATCH_SIZE = 500;
+    private static final LatencyHistogram BATCH_LATENCY = HotelMetrics.get().histogram(HotelMetrics.PIPELINE_BATCH_SECONDS);
+    private static final HotelMetrics.Counter BATCH_FALLBACKS = HotelMetrics.get().counter(HotelMetrics.PIPELINE_FALLBACKS);
+
+    private final ConnectionPool pool;
+    private RoomChangeFeed feed;
+    private BookingPipeline bulk;
+
+    public JdbcRepository(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    @Override
+    public int forEachRoom(RoomLoader.RoomRow consumer) throws SQLException {
+        return RoomLoader.forEachRoom(pool, consumer);
+    }
+
+    @Override
+    public void saveRoom(int roomNumber, String type, double price) throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "INSERT INTO rooms (room_number, type, price, available) VALUES (?, ?, ?, true) "
+                            + "ON DUPLICATE KEY UPDATE type = VALUES(type), price = VALUES(price), version = version + 1")) {
+                stmt.setInt(1, roomNumber);
+                stmt.setString(2, type);
+                stmt.setDouble(3, price);
+                stmt.executeUpdate();
+            }
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "INSERT INTO room_changes (room_number, available, version, kind) "
+                            + "SELECT room_number, available, version, ? FROM rooms WHERE room_number = ?")) {
+                stmt.setString(1, RoomChangeFeed.UPDATE);
+                stmt.setInt(2, roomNumber);
+                stmt.executeUpdate();
+            }
+            connection.commit();
+        }
+        catchUp();
+    }
+
+    @Override
+    public synchronized void subscribe(RoomChangeFeed.Listener listener) throws SQLException {
+        if (feed == null) {
+            feed = new RoomChangeFeed(pool, POLL_MILLIS);
+            feed.start();
+        }
+        feed.addListener(listener);
+    }
+
+    @Override
+    public long book(BookingRequest request) throws SQLException, RoomUnavailableException {
+        try {
+            return BookingDao.book(pool, request);
+        } finally {
+            catchUp();
+        }
+    }
+
+    /**
+     * Writes the batch through a {@link BookingPipeline}, a few hundred
+     * bookings per transaction, reporting each transaction's time and
+     * fallbacks to {@link HotelMetrics}.
+     */
+    @Override
+    public long[] bookAll(List<BookingRequest> requests, Exception[] failures) throws SQLException {
+        BookingPipeline pipeline;
+        synchronized (this) {
+            if (bulk == null) {
+                bulk = new BookingPipeline(pool, BULK_BATCH_SIZE, 5);
+                bulk.setBatchListener((bookings, rooms, elapsedNanos, fellBack) -> {
+                    BATCH_LATENCY.record(elapsedNanos);
+                    if (fellBack) {
+                        BATCH_FALLBACKS.increment();
+                    }
+                });
+            }
+            pipeline = bulk;
+        }
+        List<CompletableFuture<Long>> results = new ArrayList<>(requests.size());
+        for (BookingRequest request : requests) {
+            results.add(pipeline.submit(request));
+        }
+        long[] ids = new long[requests.size()];
+        try {
+            for (int i = 0; i < ids.length; i++) {
+                try {
+                    ids[i] = results.get(i).get();
+                } catch (ExecutionException e) {
+                    ids[i] = -1;
+                    failures[i] = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for bookings to be written", e);
+        } finally {
+            catchUp();
+        }
+        return ids;
+    }
+
+    @Override
+    public boolean cancel(long bookingId) throws SQLException {
+        boolean cancelled = BookingDao.cancel(pool, bookingId);
+        if (cancelled) {
+            catchUp();
+        }
+        return cancelled;
+    }
+
+    @Override
+    public List<BookingRecord> search(String query, int limit) throws SQLException {
+        return BookingDao.searchBookings(pool, query, limit);
+    }
+
+    @Override
+    public void forEachBooking(Consumer<BookingRecord> consumer) throws SQLException {
+        BookingDao.forEachBooking(pool, consumer);
+    }
+
+    @Override
+    public void forEachBookingRow(BookingDao.BookingRow consumer) throws SQLException {
+        BookingDao.forEachBookingRow(pool, consumer);
+    }
+
+    @Override
+    public void forEachActiveStay(BookingDao.StayConsumer consumer) throws SQLException {
+        BookingDao.forEachActiveStay(pool, consumer);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (bulk != null) {
+            bulk.close();
+            bulk = null;
+        }
+        if (feed != null) {
+            feed.close();
+            feed = null;
+        }
+    }
+
+    /**
+     * Waits for the feed to deliver this instance's own write to
+     * subscribers, so a read after the write sees it. The poll runs on the
+     * feed's thread and is shared by writers catching up together, so they
+     * do not contend for the feed's lock.
+     */
+    private void catchUp() {
+        RoomChangeFeed current;
+        synchronized (this) {
+            current = feed;
+        }
+        if (current != null) {
+            current.catchUp();
+        }
+    }
+}
@@ -0,0 +1,255 @@
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Simulates many front desks working one {@link BookingService} at once,
+ * for capacity planning. Each desk is a client on its own thread (a virtual
+ * thread where the runtime has them) that loops over a weighted mix of
+ * booking, cancelling its own earlier bookings, searching guests and listing
+ * available rooms, with synthetic but valid guests and stays over the next
+ * few months. Rooms are added until the store holds the requested number.
+ *
+ * <p>After the warm-up, every operation's latency and outcome is recorded;
+ * the report gives throughput, p50/p99/p99.9 latency and, for bookings, how
+ * often a room was already taken by another desk.
+ *
+ * <pre>
+ * java LoadGenerator [--clients 50] [--seconds 30] [--warmup 5] [--rooms 500]
+ *                    [--mix book=40,cancel=15,search=25,list=20]
+ * </pre>
+ *
+ * Storage comes from {@link PersistenceConfig}, in memory without a journal
+ * unless configured otherwise, so {@code -Dhotel.persistence=mysql} runs the
+ * same load against the database.
+ */
+public class LoadGenerator {
+    private enum Operation {
+        BOOK, CANCEL, SEARCH, LIST
+    }
+
+    private static final String[] FIRST_NAMES = {"John", "Priya", "Wei", "Maria", "Ahmed", "Olga", "Kenji", "Amara",
+            "Lucas", "Fatima", "Rahul", "Emma", "Diego", "Aisha", "Noah", "Sofia"};
+    private static final String[] LAST_NAMES = {"Doe", "Sharma", "Chen", "Garcia", "Khan", "Ivanova", "Tanaka", "Okafor",
+            "Silva", "Haddad", "Singh", "Smith", "Lopez", "Bello", "Brown", "Rossi"};
+    private static final String[] STREETS = {"Baker Street", "Park Avenue", "MG Road", "Station Road", "Lake View", "Hill Crescent"};
+    private static final String[] TYPES = {null, "Single", "Double", "Suite"};
+    private static final int MAX_OWN_BOOKINGS = 64;
+
+    private static final class Stats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder conflicts = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+    }
+
+    private final BookingService service;
+    private final int[] roomNumbers;
+    private final int[] mix;
+    private final Stats[] stats = new Stats[Operation.values().length];
+    private volatile boolean measuring;
+    private volatile boolean running = true;
+
+    LoadGenerator(BookingService service, int[] roomNumbers, int[] mix) {
+        this.service = service;
+        this.roomNumbers = roomNumbers;
+        this.mix = mix;
+        for (int i = 0; i < stats.length; i++) {
+            stats[i] = new Stats();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = 50;
+        int seconds = 30;
+        int warmup = 5;
+        int rooms = 500;
+        int[] mix = {40, 15, 25, 20};
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--clients":
+                    clients = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--seconds":
+                    seconds = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--rooms":
+                    rooms = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--mix":
+                    mix = parseMix(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (System.getProperty(PersistenceConfig.JOURNAL_PATH) == null) {
+            System.setProperty(PersistenceConfig.JOURNAL_PATH, "none");
+        }
+        PersistenceConfig config = PersistenceConfig.load(PersistenceConfig.Mode.MEMORY, null, null, null, Math.min(clients, 50));
+        try (PersistenceConfig.Repositories store = config.open()) {
+            int[] roomNumbers = seedRooms(store.getRooms(), rooms);
+            BookingService service = new CachingBookingService(store.getRooms(), store.getBookings(), Validators.Ruleset.CONSOLE);
+            service.allRooms();
+            System.out.println("Driving " + config + " with " + clients + " clients over " + roomNumbers.length + " rooms for "
+                    + warmup + "s warm-up + " + seconds + "s");
+            LoadGenerator generator = new LoadGenerator(service, roomNumbers, mix);
+            generator.run(clients, warmup, seconds);
+            service.close();
+        }
+    }
+
+    private static int[] parseMix(String spec) {
+        int[] mix = new int[Operation.values().length];
+        for (String part : spec.split(",")) {
+            String[] weight = part.split("=");
+            mix[Operation.valueOf(weight[0].trim().toUpperCase(Locale.ROOT)).ordinal()] = Integer.parseInt(weight[1].trim());
+        }
+        return mix;
+    }
+
+    /** Adds rooms numbered after the highest existing one until there are {@code count}, and returns every room number. */
+    private static int[] seedRooms(RoomRepository repository, int count) throws SQLException {
+        List<Integer> numbers = new ArrayList<>();
+        repository.forEachRoom((roomNumber, type, price, available, version) -> numbers.add(roomNumber));
+        int next = numbers.isEmpty() ? 101 : numbers.get(numbers.size() - 1) + 1;
+        RoomType[] types = RoomType.values();
+        while (numbers.size() < count) {
+            RoomType type = types[next % types.length];
+            repository.saveRoom(next, type.getLabel(), type.getPrice());
+            numbers.add(next++);
+        }
+        return numbers.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    void run(int clients, int warmupSeconds, int seconds) throws InterruptedException {
+        ExecutorService executor = AsyncDb.newExecutor("load-client", clients);
+        for (int i = 0; i < clients; i++) {
+            executor.execute(this::client);
+        }
+        TimeUnit.SECONDS.sleep(warmupSeconds);
+        measuring = true;
+        long start = System.nanoTime();
+        for (int elapsed = 0; elapsed < seconds; elapsed++) {
+            TimeUnit.SECONDS.sleep(1);
+            if ((elapsed + 1) % 5 == 0 && elapsed + 1 < seconds) {
+                System.out.printf("  %3ds  %,10.0f ops/s%n", elapsed + 1, totalCount() / ((System.nanoTime() - start) / 1e9));
+            }
+        }
+        measuring = false;
+        double measuredSeconds = (System.nanoTime() - start) / 1e9;
+        running = false;
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+        report(measuredSeconds);
+    }
+
+    private void client() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long[] ownBookings = new long[MAX_OWN_BOOKINGS];
+        int owned = 0;
+        int totalWeight = 0;
+        for (int weight : mix) {
+            totalWeight += weight;
+        }
+        while (running) {
+            Operation operation = pick(random.nextInt(totalWeight));
+            if (operation == Operation.CANCEL && owned == 0) {
+                operation = Operation.BOOK;
+            } else if (operation == Operation.BOOK && owned == MAX_OWN_BOOKINGS) {
+                // a forgotten booking would hold its rooms for the rest of the run
+                operation = Operation.CANCEL;
+            }
+            Stats stat = stats[operation.ordinal()];
+            long start = System.nanoTime();
+            try {
+                switch (operation) {
+                    case BOOK:
+                        ownBookings[owned] = service.book(randomRequest(random));
+                        owned++;
+                        break;
+                    case CANCEL:
+                        int index = random.nextInt(owned);
+                        service.cancel(ownBookings[index]);
+                        ownBookings[index] = ownBookings[--owned];
+                        break;
+                    case SEARCH:
+                        service.search(LAST_NAMES[random.nextInt(LAST_NAMES.length)].substring(0, 3));
+                        break;
+                    case LIST:
+                        LocalDate from = LocalDate.now().plusDays(random.nextInt(90));
+                        service.availableRooms(TYPES[random.nextInt(TYPES.length)], from, from.plusDays(1 + random.nextInt(7)));
+                        break;
+                    default:
+                        throw new IllegalStateException("Unknown operation " + operation);
+                }
+            } catch (RoomUnavailableException e) {
+                if (measuring) {
+                    stat.conflicts.increment();
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (measuring) {
+                    stat.errors.increment();
+                }
+            }
+            if (measuring) {
+                stat.latency.recordSince(start);
+            }
+        }
+    }
+
+    private Operation pick(int roll) {
+        for (Operation operation : Operation.values()) {
+            roll -= mix[operation.ordinal()];
+            if (roll < 0) {
+                return operation;
+            }
+        }
+        return Operation.LIST;
+    }
+
+    private BookingRequest randomRequest(ThreadLocalRandom random) {
+        String first = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+        String last = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+        int[] rooms = new int[random.nextInt(10) == 0 ? 2 : 1];
+        for (int i = 0; i < rooms.length; i++) {
+            rooms[i] = roomNumbers[random.nextInt(roomNumbers.length)];
+        }
+        LocalDate checkIn = LocalDate.now().plusDays(random.nextInt(90));
+        return new BookingRequest(rooms, first + " " + last, "9" + (100_000_000 + random.nextInt(900_000_000)),
+                (10 + random.nextInt(240)) + " " + STREETS[random.nextInt(STREETS.length)],
+                first.toLowerCase(Locale.ROOT) + "." + last.toLowerCase(Locale.ROOT) + random.nextInt(1000) + "@example.com",
+                checkIn, checkIn.plusDays(1 + random.nextInt(7)));
+    }
+
+    private long totalCount() {
+        long total = 0;
+        for (Stats stat : stats) {
+            total += stat.latency.getCount();
+        }
+        return total;
+    }
+
+    private void report(double seconds) {
+        System.out.printf("%n%-8s %10s %10s %10s %10s %10s %10s %10s %8s%n",
+                "op", "count", "ops/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "conflict%", "errors");
+        for (Operation operation : Operation.values()) {
+            Stats stat = stats[operation.ordinal()];
+            long count = stat.latency.getCount();
+            System.out.printf("%-8s %,10d %,10.0f %10.3f %10.3f %10.3f %10.3f %10.2f %,8d%n",
+                    operation.name().toLowerCase(Locale.ROOT), count, count / seconds,
+                    stat.latency.valueAtPercentile(50) / 1e6, stat.latency.valueAtPercentile(99) / 1e6,
+                    stat.latency.valueAtPercentile(99.9) / 1e6, stat.latency.getMaxNanos() / 1e6,
+                    count == 0 ? 0 : 100.0 * stat.conflicts.sum() / count, stat.errors.sum());
+        }
+        System.out.printf("%-8s %,10d %,10.0f%n", "total", totalCount(), totalCount() / seconds);
+    }
+}
@@ -0,0 +1,207 @@
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Chooses where rooms and bookings are kept. Settings come from
+ * {@code hotel.properties} in the working directory (or the file named by
+ * the {@code hotel.config} system property), then system properties, then
+ * the defaults the calling program passes in.
+ *
+ * <pre>
+ * hotel.persistence   mysql | embedded | memory
+ * hotel.db.url        JDBC URL for mysql mode
+ * hotel.db.user       user for mysql and embedded modes
+ * hotel.db.password   password for mysql and embedded modes
+ * hotel.db.poolSize   connections per instance
+ * hotel.embedded.path database location for embedded mode, default ./serenity_suites;
+ *                     "mem:name" keeps it in memory for the life of the process
+ * hotel.journal.path  journal directory for memory mode, default ./serenity_suites-journal;
+ *                     "none" keeps nothing across restarts
+ * hotel.sql.profile   time statements by shape in the database modes, default false
+ * hotel.sql.slowMillis
+ *                     statements at least this slow are logged, default 200
+ * hotel.sql.slowLog   slow-query log file when profiling, default ./serenity_suites-slow-sql.log;
+ *                     "none" only counts them
+ * hotel.sql.repeatThreshold
+ *                     executions of one shape on one connection that are logged as
+ *                     repeated, default 10
+ * </pre>
+ *
+ * Embedded mode runs H2 in MySQL compatibility mode, so the same SQL and
+ * migrations serve both; the H2 jar must be on the classpath.
+ */
+public final class PersistenceConfig {
+    public enum Mode {
+        MYSQL, EMBEDDED, MEMORY
+    }
+
+    public static final String MODE = "hotel.persistence";
+    public static final String URL = "hotel.db.url";
+    public static final String USER = "hotel.db.user";
+    public static final String PASSWORD = "hotel.db.password";
+    public static final String POOL_SIZE = "hotel.db.poolSize";
+    public static final String EMBEDDED_PATH = "hotel.embedded.path";
+    public static final String JOURNAL_PATH = "hotel.journal.path";
+    public static final String SQL_PROFILE = "hotel.sql.profile";
+    public static final String SQL_SLOW_MILLIS = "hotel.sql.slowMillis";
+    public static final String SQL_SLOW_LOG = "hotel.sql.slowLog";
+    public static final String SQL_REPEAT_THRESHOLD = "hotel.sql.repeatThreshold";
+
+    /** Repositories opened from a configuration, together with the pool behind them, if any. */
+    public static final class Repositories implements AutoCloseable {
+        private final RoomRepository rooms;
+        private final BookingRepository bookings;
+        private final ConnectionPool pool;
+
+        Repositories(RoomRepository rooms, BookingRepository bookings, ConnectionPool pool) {
+            this.rooms = rooms;
+            this.bookings = bookings;
+            this.pool = pool;
+        }
+
+        public RoomRepository getRooms() {
+            return rooms;
+        }
+
+        public BookingRepository getBookings() {
+            return bookings;
+        }
+
+        /** The connection pool, or {@code null} in memory mode. */
+        public ConnectionPool getPool() {
+            return pool;
+        }
+
+        @Override
+        public void close() {
+            rooms.close();
+            bookings.close();
+            if (pool != null) {
+                pool.close();
+            }
+        }
+    }
+
+    private final Properties settings;
+
+    private PersistenceConfig(Properties settings) {
+        this.settings = settings;
+    }
+
+    public static PersistenceConfig load(Mode defaultMode, String defaultUrl, String defaultUser, String defaultPassword,
+                                         int defaultPoolSize) throws IOException {
+        Properties settings = new Properties();
+        settings.setProperty(MODE, defaultMode.name().toLowerCase(Locale.ROOT));
+        if (defaultUrl != null) {
+            settings.setProperty(URL, defaultUrl);
+        }
+        settings.setProperty(USER, defaultUser == null ? "" : defaultUser);
+        settings.setProperty(PASSWORD, defaultPassword == null ? "" : defaultPassword);
+        settings.setProperty(POOL_SIZE, Integer.toString(defaultPoolSize));
+
+        Path file = Paths.get(System.getProperty("hotel.config", "hotel.properties"));
+        if (Files.isRegularFile(file)) {
+            try (InputStream in = new FileInputStream(file.toFile())) {
+                settings.load(in);
+            }
+        }
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (key.startsWith("hotel.")) {
+                settings.setProperty(key, System.getProperty(key));
+            }
+        }
+        return new PersistenceConfig(settings);
+    }
+
+    public Mode getMode() {
+        String mode = settings.getProperty(MODE).trim().toUpperCase(Locale.ROOT);
+        try {
+            return Mode.valueOf(mode);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown " + MODE + " '" + mode.toLowerCase(Locale.ROOT) + "'; use mysql, embedded or memory");
+        }
+    }
+
+    /** The JDBC URL for the database modes. */
+    public String getUrl() {
+        if (getMode() == Mode.EMBEDDED) {
+            String path = settings.getProperty(EMBEDDED_PATH, "./serenity_suites");
+            return "jdbc:h2:" + path + (path.startsWith("mem:") ? ";DB_CLOSE_DELAY=-1" : "") + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE";
+        }
+        String url = settings.getProperty(URL);
+        if (url == null) {
+            throw new IllegalArgumentException("No " + URL + " configured");
+        }
+        return url;
+    }
+
+    /** Opens a pool on the configured database and brings its schema up to date. */
+    public ConnectionPool openPool() throws SQLException {
+        Mode mode = getMode();
+        if (mode == Mode.MEMORY) {
+            throw new IllegalStateException("Memory mode has no database");
+        }
+        if (mode == Mode.EMBEDDED) {
+            try {
+                Class.forName("org.h2.Driver");
+            } catch (ClassNotFoundException e) {
+                throw new SQLException("Embedded mode needs the H2 driver jar on the classpath", e);
+            }
+        }
+        ConnectionPool pool = new ConnectionPool(getUrl(), settings.getProperty(USER), settings.getProperty(PASSWORD),
+                Integer.parseInt(settings.getProperty(POOL_SIZE).trim()));
+        pool.setProfiler(getProfiler());
+        try {
+            SchemaMigrations.migrate(pool);
+        } catch (SQLException e) {
+            pool.close();
+            throw e;
+        }
+        return pool;
+    }
+
+    /** A statement profiler as configured, or {@code null} if profiling is off. */
+    public StatementProfiler getProfiler() {
+        if (!Boolean.parseBoolean(settings.getProperty(SQL_PROFILE, "false").trim())) {
+            return null;
+        }
+        String slowLog = settings.getProperty(SQL_SLOW_LOG, "./serenity_suites-slow-sql.log").trim();
+        return new StatementProfiler(Long.parseLong(settings.getProperty(SQL_SLOW_MILLIS, "200").trim()),
+                slowLog.equalsIgnoreCase("none") ? null : Paths.get(slowLog),
+                Integer.parseInt(settings.getProperty(SQL_REPEAT_THRESHOLD, "10").trim()));
+    }
+
+    /** The journal directory for memory mode, or {@code null} if nothing is kept. */
+    public Path getJournalPath() {
+        String path = settings.getProperty(JOURNAL_PATH, "./serenity_suites-journal").trim();
+        return path.equalsIgnoreCase("none") ? null : Paths.get(path);
+    }
+
+    public Repositories open() throws SQLException {
+        if (getMode() == Mode.MEMORY) {
+            Path journal = getJournalPath();
+            InMemoryRepository store;
+            try {
+                store = journal == null ? new InMemoryRepository() : new InMemoryRepository(journal);
+            } catch (IOException e) {
+                throw new SQLException("Could not open the booking journal in " + journal + ": " + e.getMessage(), e);
+            }
+            return new Repositories(store, store, null);
+        }
+        ConnectionPool pool = openPool();
+        JdbcRepository store = new JdbcRepository(pool);
+        return new Repositories(store, store, pool);
+    }
+
+    @Override
+    public String toString() {
+        return getMode() == Mode.MEMORY ? "memory" + (getJournalPath() == null ? "" : ", journal " + getJournalPath()) : getMode().name().toLowerCase(Locale.ROOT) + " " + getUrl();
+    }
+}
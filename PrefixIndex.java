@@ -0,0 +1,103 @@
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted index for type-ahead lookups. Each item is indexed
+ * under the case-folded words of its fields, so "jo", "doe", "98765" and
+ * "john.doe@exa" all find John Doe. A query matches
+ * the items that have, for every word of the query, some token starting
+ * with that word. Results come back in the order items were added.
+ * Items are compared by identity.
+ */
+public class PrefixIndex<T> {
+    private final TreeMap<String, Set<T>> postings = new TreeMap<>();
+    private final Map<T, String[]> tokensOf = new IdentityHashMap<>();
+    private final Map<T, Long> sequence = new IdentityHashMap<>();
+    private long nextSequence;
+
+    public synchronized void add(T item, String... fields) {
+        remove(item);
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String field : fields) {
+            if (field != null) {
+                tokenize(field, tokens);
+            }
+        }
+        for (String token : tokens) {
+            postings.computeIfAbsent(token, t -> new LinkedHashSet<>()).add(item);
+        }
+        tokensOf.put(item, tokens.toArray(new String[0]));
+        sequence.put(item, nextSequence++);
+    }
+
+    public synchronized boolean remove(T item) {
+        String[] tokens = tokensOf.remove(item);
+        if (tokens == null) {
+            return false;
+        }
+        sequence.remove(item);
+        for (String token : tokens) {
+            Set<T> items = postings.get(token);
+            items.remove(item);
+            if (items.isEmpty()) {
+                postings.remove(token);
+            }
+        }
+        return true;
+    }
+
+    /** Returns every item matching all words of {@code query}; a blank query matches nothing. */
+    public synchronized List<T> search(String query) {
+        Set<String> words = new LinkedHashSet<>();
+        tokenize(query, words);
+        Set<T> matches = null;
+        for (String word : words) {
+            Set<T> withPrefix = new LinkedHashSet<>();
+            for (Set<T> items : postings.subMap(word, true, word + Character.MAX_VALUE, false).values()) {
+                if (matches == null) {
+                    withPrefix.addAll(items);
+                } else {
+                    for (T item : items) {
+                        if (matches.contains(item)) {
+                            withPrefix.add(item);
+                        }
+                    }
+                }
+            }
+            matches = withPrefix;
+            if (matches.isEmpty()) {
+                break;
+            }
+        }
+        List<T> result = matches == null ? new ArrayList<>() : new ArrayList<>(matches);
+        result.sort((a, b) -> Long.compare(sequence.get(a), sequence.get(b)));
+        return result;
+    }
+
+    public synchronized int size() {
+        return tokensOf.size();
+    }
+
+    private static void tokenize(String text, Set<String> tokens) {
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(fold(text.substring(start, i)));
+                start = -1;
+            }
+        }
+    }
+
+    private static String fold(String s) {
+        return s.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,405 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Nightly room rates from a list base price and pricing rules. Every rule
+ * multiplies the rate of the nights and room types it covers; occupancy
+ * rules only apply on nights when at least a given share of the rooms is
+ * booked.
+ *
+ * <p>Rules are compiled into one table per room type holding the rate of
+ * every night of the horizon and its running total, so quoting a stay is
+ * two array reads per room however many rules there are. Adding a rule or
+ * booking a stay recomputes only the nights it touches. Tables are replaced
+ * rather than changed, so quotes never lock and never see half an update.
+ * Nights outside the horizon are priced by evaluating the rules directly,
+ * without occupancy.
+ *
+ * <p>Rules can be loaded from a text file, one rule per line:
+ *
+ * <pre>
+ * # kind    dates or days          type    multiplier
+ * season    2026-12-20 2027-01-05  *       1.40
+ * weekly    FRIDAY,SATURDAY        Suite   1.15
+ * occupancy 0.80                   *       1.25
+ * </pre>
+ *
+ * Season end dates are exclusive, like check-out dates, and {@code *} means
+ * every room type.
+ */
+public class RateEngine {
+    public static final String RULES_PATH = "hotel.rates.path";
+    public static final int HORIZON_DAYS = AvailabilityCalendar.HORIZON_DAYS;
+
+    public static final class Rule {
+        private final LocalDate from;
+        private final LocalDate to;
+        private final Set<DayOfWeek> days;
+        private final double minOccupancy;
+        private final String type;
+        private final double multiplier;
+
+        private Rule(LocalDate from, LocalDate to, Set<DayOfWeek> days, double minOccupancy, String type, double multiplier) {
+            if (multiplier < 0 || Double.isNaN(multiplier)) {
+                throw new IllegalArgumentException("Invalid multiplier " + multiplier);
+            }
+            if (from != null && to != null && !to.isAfter(from)) {
+                throw new IllegalArgumentException("Season end " + to + " must be after its start " + from);
+            }
+            this.from = from;
+            this.to = to;
+            this.days = days;
+            this.minOccupancy = minOccupancy;
+            this.type = type;
+            this.multiplier = multiplier;
+        }
+
+        /** Nights from {@code from} up to, not including, {@code to}; a {@code null} type means every type. */
+        public static Rule season(LocalDate from, LocalDate to, String type, double multiplier) {
+            return new Rule(from, to, null, 0, type, multiplier);
+        }
+
+        /** Every night that falls on one of {@code days}. */
+        public static Rule weekly(Set<DayOfWeek> days, String type, double multiplier) {
+            return new Rule(null, null, EnumSet.copyOf(days), 0, type, multiplier);
+        }
+
+        /** Nights on which at least {@code share} (0 to 1) of the rooms are booked. */
+        public static Rule occupancy(double share, String type, double multiplier) {
+            if (!(share > 0 && share <= 1)) {
+                throw new IllegalArgumentException("Occupancy share must be in (0, 1]: " + share);
+            }
+            return new Rule(null, null, null, share, type, multiplier);
+        }
+
+        boolean isOccupancyRule() {
+            return minOccupancy > 0;
+        }
+
+        boolean covers(String typeKey, LocalDate night) {
+            return (type == null || type.equalsIgnoreCase(typeKey))
+                    && (from == null || !night.isBefore(from))
+                    && (to == null || night.isBefore(to))
+                    && (days == null || days.contains(night.getDayOfWeek()));
+        }
+
+        @Override
+        public String toString() {
+            String when = isOccupancyRule() ? "occupancy " + minOccupancy
+                    : days != null ? "weekly " + days
+                    : "season " + from + " " + to;
+            return when + " " + (type == null ? "*" : type) + " x" + multiplier;
+        }
+    }
+
+    /** The compiled rates of one room type; never changed once published. */
+    private static final class Table {
+        private final String type;
+        private final double base;
+        /** Rate per night from season and weekly rules only. */
+        private final double[] seasonal;
+        /** Rate per night with occupancy rules applied. */
+        private final double[] nightly;
+        /** {@code cumulative[n]} is the sum of {@code nightly[0..n)}. */
+        private final double[] cumulative;
+
+        Table(String type, double base, double[] seasonal, double[] nightly, double[] cumulative) {
+            this.type = type;
+            this.base = base;
+            this.seasonal = seasonal;
+            this.nightly = nightly;
+            this.cumulative = cumulative;
+        }
+    }
+
+    private final LocalDate horizonStart;
+    private final List<Rule> seasonRules = new ArrayList<>();
+    private final List<Rule> occupancyRules = new ArrayList<>();
+    private final int[] occupied = new int[HORIZON_DAYS];
+    private int roomCount;
+    private volatile Map<String, Table> tables = new HashMap<>();
+
+    public RateEngine(LocalDate horizonStart) {
+        this.horizonStart = horizonStart;
+        for (RoomType type : RoomType.values()) {
+            addType(type.getLabel(), type.getPrice());
+        }
+    }
+
+    /**
+     * Reads rules from {@code file}; a file that does not exist holds no rules.
+     *
+     * @throws IllegalArgumentException naming the line of a rule that cannot be read
+     */
+    public static List<Rule> loadRules(Path file) {
+        List<Rule> rules = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                int comment = line.indexOf('#');
+                String text = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                if (text.isEmpty()) {
+                    continue;
+                }
+                try {
+                    rules.add(parseRule(text.split("\\s+")));
+                } catch (IllegalArgumentException | DateTimeParseException e) {
+                    throw new IllegalArgumentException(file + " line " + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return rules;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rules;
+    }
+
+    private static Rule parseRule(String[] fields) {
+        String kind = fields[0].toLowerCase(Locale.ROOT);
+        int expected = "season".equals(kind) ? 5 : 4;
+        if (fields.length != expected) {
+            throw new IllegalArgumentException("Expected " + expected + " fields for a " + kind + " rule");
+        }
+        String type = "*".equals(fields[expected - 2]) ? null : fields[expected - 2];
+        double multiplier = Double.parseDouble(fields[expected - 1]);
+        switch (kind) {
+            case "season":
+                return Rule.season(LocalDate.parse(fields[1]), LocalDate.parse(fields[2]), type, multiplier);
+            case "weekly":
+                Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+                for (String day : fields[1].split(",")) {
+                    days.add(DayOfWeek.valueOf(day.trim().toUpperCase(Locale.ROOT)));
+                }
+                return Rule.weekly(days, type, multiplier);
+            case "occupancy":
+                return Rule.occupancy(Double.parseDouble(fields[1]), type, multiplier);
+            default:
+                throw new IllegalArgumentException("Unknown rule kind " + fields[0]);
+        }
+    }
+
+    public LocalDate getHorizonStart() {
+        return horizonStart;
+    }
+
+    /** Starts pricing {@code type} from {@code basePrice}; a type already known keeps its price. */
+    public synchronized void addType(String type, double basePrice) {
+        String key = key(type);
+        if (tables.containsKey(key)) {
+            return;
+        }
+        double[] seasonal = new double[HORIZON_DAYS];
+        for (int night = 0; night < HORIZON_DAYS; night++) {
+            seasonal[night] = seasonalRate(key, basePrice, horizonStart.plusDays(night));
+        }
+        Map<String, Table> updated = new HashMap<>(tables);
+        updated.put(key, compile(new Table(type, basePrice, seasonal, null, null), 0, HORIZON_DAYS));
+        tables = updated;
+    }
+
+    public synchronized void addRules(List<Rule> rules) {
+        for (Rule rule : rules) {
+            addRule(rule);
+        }
+    }
+
+    public synchronized void addRule(Rule rule) {
+        (rule.isOccupancyRule() ? occupancyRules : seasonRules).add(rule);
+        refresh(rule);
+    }
+
+    /** @return {@code false} if the rule was not in use */
+    public synchronized boolean removeRule(Rule rule) {
+        if (!(rule.isOccupancyRule() ? occupancyRules : seasonRules).remove(rule)) {
+            return false;
+        }
+        refresh(rule);
+        return true;
+    }
+
+    /** Sets the number of rooms occupancy shares are measured against. */
+    public synchronized void setRoomCount(int roomCount) {
+        this.roomCount = roomCount;
+        refreshOccupancy(0, HORIZON_DAYS);
+    }
+
+    /** Counts {@code rooms} rooms as booked for the nights of a stay; a {@code null} check-out runs to the end of the horizon. */
+    public synchronized void occupy(LocalDate from, LocalDate to, int rooms) {
+        addOccupancy(from, to, rooms);
+    }
+
+    public synchronized void release(LocalDate from, LocalDate to, int rooms) {
+        addOccupancy(from, to, -rooms);
+    }
+
+    /** The rate of one night of a room of {@code type} listed at its type's base price. */
+    public double rate(String type, LocalDate night) {
+        Table table = tables.get(key(type));
+        int index = index(night);
+        if (table != null && index >= 0 && index < HORIZON_DAYS) {
+            return table.nightly[index];
+        }
+        return seasonalRate(key(type), table == null ? RoomType.priceOf(type) : table.base, night);
+    }
+
+    /**
+     * The price of one room for a stay. A room listed at {@code roomPrice}
+     * rather than its type's base price is scaled by the same rules. A
+     * {@code null} check-out is quoted as a single night.
+     */
+    public double quote(String type, double roomPrice, LocalDate from, LocalDate to) {
+        String key = key(type);
+        Table table = tables.get(key);
+        if (table == null || table.base == 0) {
+            return slowQuote(key, roomPrice, from, to);
+        }
+        int first = index(from);
+        int end = to == null ? first + 1 : index(to);
+        if (first < 0 || end > HORIZON_DAYS) {
+            return slowQuote(key, roomPrice, from, to);
+        }
+        double total = end > first ? table.cumulative[end] - table.cumulative[first] : 0;
+        return round(roomPrice == table.base ? total : total * roomPrice / table.base);
+    }
+
+    /** The price of several rooms for the same stay. */
+    public double quote(List<BookingService.RoomInfo> rooms, LocalDate from, LocalDate to) {
+        double total = 0;
+        for (BookingService.RoomInfo room : rooms) {
+            total += quote(room.getType(), room.getPrice(), from, to);
+        }
+        return round(total);
+    }
+
+    private double slowQuote(String key, double roomPrice, LocalDate from, LocalDate to) {
+        LocalDate end = to == null ? from.plusDays(1) : to;
+        double total = 0;
+        for (LocalDate night = from; night.isBefore(end); night = night.plusDays(1)) {
+            total += seasonalRate(key, roomPrice, night);
+        }
+        return round(total);
+    }
+
+    private void addOccupancy(LocalDate from, LocalDate to, int rooms) {
+        int first = Math.max(0, index(from));
+        int end = to == null ? HORIZON_DAYS : Math.min(HORIZON_DAYS, index(to));
+        if (first >= end) {
+            return;
+        }
+        for (int night = first; night < end; night++) {
+            occupied[night] = Math.max(0, occupied[night] + rooms);
+        }
+        if (!occupancyRules.isEmpty()) {
+            refreshOccupancy(first, end);
+        }
+    }
+
+    /** Recomputes the nights and types a rule covers. */
+    private void refresh(Rule rule) {
+        int first = rule.from == null ? 0 : Math.max(0, index(rule.from));
+        int end = rule.to == null ? HORIZON_DAYS : Math.min(HORIZON_DAYS, index(rule.to));
+        if (first >= end) {
+            return;
+        }
+        Map<String, Table> updated = new HashMap<>(tables);
+        for (Map.Entry<String, Table> entry : tables.entrySet()) {
+            if (rule.type != null && !rule.type.equalsIgnoreCase(entry.getKey())) {
+                continue;
+            }
+            Table table = entry.getValue();
+            double[] seasonal = table.seasonal;
+            if (!rule.isOccupancyRule()) {
+                seasonal = seasonal.clone();
+                for (int night = first; night < end; night++) {
+                    seasonal[night] = seasonalRate(entry.getKey(), table.base, horizonStart.plusDays(night));
+                }
+            }
+            updated.put(entry.getKey(), compile(new Table(table.type, table.base, seasonal, table.nightly, table.cumulative), first, end));
+        }
+        tables = updated;
+    }
+
+    private void refreshOccupancy(int first, int end) {
+        Map<String, Table> updated = new HashMap<>(tables);
+        for (Map.Entry<String, Table> entry : tables.entrySet()) {
+            updated.put(entry.getKey(), compile(entry.getValue(), first, end));
+        }
+        tables = updated;
+    }
+
+    /** Returns a copy of {@code table} with nights {@code [first, end)} re-rated and the running totals rebuilt from there. */
+    private Table compile(Table table, int first, int end) {
+        double[] nightly = table.nightly == null ? new double[HORIZON_DAYS] : table.nightly.clone();
+        double[] cumulative = table.cumulative == null ? new double[HORIZON_DAYS + 1] : table.cumulative.clone();
+        String key = key(table.type);
+        for (int night = first; night < end; night++) {
+            nightly[night] = round(table.seasonal[night] * occupancyMultiplier(key, night));
+        }
+        for (int night = first; night < HORIZON_DAYS; night++) {
+            cumulative[night + 1] = cumulative[night] + nightly[night];
+        }
+        return new Table(table.type, table.base, table.seasonal, nightly, cumulative);
+    }
+
+    private double seasonalRate(String key, double base, LocalDate night) {
+        double rate = base;
+        for (Rule rule : seasonRules) {
+            if (rule.covers(key, night)) {
+                rate *= rule.multiplier;
+            }
+        }
+        return round(rate);
+    }
+
+    private double occupancyMultiplier(String key, int night) {
+        if (occupancyRules.isEmpty() || roomCount == 0) {
+            return 1;
+        }
+        double share = (double) occupied[night] / roomCount;
+        LocalDate date = null;
+        double multiplier = 1;
+        for (Rule rule : occupancyRules) {
+            if (share >= rule.minOccupancy) {
+                if (date == null) {
+                    date = horizonStart.plusDays(night);
+                }
+                if (rule.covers(key, date)) {
+                    multiplier *= rule.multiplier;
+                }
+            }
+        }
+        return multiplier;
+    }
+
+    private int index(LocalDate date) {
+        long days = ChronoUnit.DAYS.between(horizonStart, date);
+        return (int) Math.max(-1, Math.min(HORIZON_DAYS + 1, days));
+    }
+
+    private static String key(String type) {
+        return type == null ? "" : type.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static double round(double amount) {
+        return Math.round(amount * 100) / 100.0;
+    }
+}
@@ -0,0 +1,368 @@
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tails the {@code room_changes} log so every app instance can serve room
+ * reads from memory and still converge on what other desks book. Writers
+ * append a row in the same transaction as the change (see
+ * {@link BookingDao#logRoomChanges}); this feed polls for rows past its
+ * cursor and hands them to listeners on its own daemon thread, so an
+ * instance is at most one poll interval behind a committed change.
+ *
+ * Auto-increment ids can commit out of order, so a hole below a delivered
+ * id is held open for {@link #GAP_TIMEOUT_MILLIS} in case its transaction is
+ * still running; after that it is treated as rolled back. When the cursor
+ * falls behind the retained log, or the backlog is larger than a reload,
+ * listeners are told to reset and reload their state from the tables.
+ */
+public class RoomChangeFeed implements AutoCloseable {
+    public static final String BOOK = "BOOK";
+    public static final String CANCEL = "CANCEL";
+    public static final String UPDATE = "UPDATE";
+
+    static final long GAP_TIMEOUT_MILLIS = 10_000;
+    private static final int BATCH_SIZE = 500;
+    private static final int MAX_BACKLOG = 10_000;
+    private static final long RETENTION_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int POLLS_PER_PRUNE = 60;
+    private static final long CATCH_UP_TIMEOUT_MILLIS = 5_000;
+
+    public static final class Change {
+        private final long id;
+        private final int roomNumber;
+        private final boolean available;
+        private final int version;
+        private final String kind;
+        private final LocalDate checkIn;
+        private final LocalDate checkOut;
+
+        Change(long id, int roomNumber, boolean available, int version, String kind, LocalDate checkIn, LocalDate checkOut) {
+            this.id = id;
+            this.roomNumber = roomNumber;
+            this.available = available;
+            this.version = version;
+            this.kind = kind;
+            this.checkIn = checkIn;
+            this.checkOut = checkOut;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public int getRoomNumber() {
+            return roomNumber;
+        }
+
+        /** The room's {@code available} flag after the change. */
+        public boolean isAvailable() {
+            return available;
+        }
+
+        /** The room's {@code version} after the change. */
+        public int getVersion() {
+            return version;
+        }
+
+        /** {@link #BOOK}, {@link #CANCEL} or {@link #UPDATE}. */
+        public String getKind() {
+            return kind;
+        }
+
+        /** First night of the stay booked or cancelled, or {@code null} for a plain update. */
+        public LocalDate getCheckIn() {
+            return checkIn;
+        }
+
+        /** Check-out date of the stay, or {@code null} if open-ended. */
+        public LocalDate getCheckOut() {
+            return checkOut;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + id + " " + kind + " room " + roomNumber + " v" + version + (available ? " available" : " held")
+                    + (checkIn == null ? "" : " " + checkIn + " to " + (checkOut == null ? "open" : checkOut));
+        }
+    }
+
+    public interface Listener {
+        /**
+         * Called with changes in the order they became visible, which is not
+         * always id order; changes may repeat state already reflected in a
+         * fresh load, so apply them by version.
+         */
+        void onChanges(List<Change> changes);
+
+        /** Called when changes were missed, or {@link #onChanges} threw, and the listener should reload everything. */
+        void onReset();
+    }
+
+    private final ConnectionPool pool;
+    private final long pollMillis;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final TreeSet<Long> deliveredAhead = new TreeSet<>();
+    private final AtomicBoolean pollRequested = new AtomicBoolean();
+    private final Object pollsDone = new Object();
+    private volatile ScheduledExecutorService poller;
+    private volatile Thread pollingThread;
+    private long pollsStarted;
+    private long pollsFinished;
+    private long cursor = -1;
+    private long gapSince;
+    private int polls;
+    private volatile long lastPollMillis;
+
+    public RoomChangeFeed(ConnectionPool pool, long pollMillis) {
+        this.pool = pool;
+        this.pollMillis = pollMillis;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Positions the cursor at the end of the log and starts polling. Call it
+     * before loading the state the listeners maintain, so nothing committed
+     * during the load is missed.
+     */
+    public synchronized void start() throws SQLException {
+        if (poller != null) {
+            return;
+        }
+        try (Connection connection = pool.getConnection()) {
+            cursor = bounds(connection)[1];
+        }
+        lastPollMillis = System.currentTimeMillis();
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "room-change-feed");
+            t.setDaemon(true);
+            return t;
+        });
+        poller.scheduleWithFixedDelay(this::pollQuietly, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns once a poll that started after this call has delivered what it
+     * read, so a change committed before the call has reached listeners.
+     * The poll runs on the feed's own thread, and writers that catch up
+     * together share it. Gives up after {@value #CATCH_UP_TIMEOUT_MILLIS}ms,
+     * or if the feed is stopped, leaving the change to the next tick.
+     */
+    public void catchUp() {
+        if (Thread.currentThread() == pollingThread) {
+            // A listener writing from inside a delivery; waiting would wait for itself.
+            return;
+        }
+        long target;
+        synchronized (pollsDone) {
+            target = pollsStarted + 1;
+        }
+        pollSoon();
+        long deadline = System.currentTimeMillis() + CATCH_UP_TIMEOUT_MILLIS;
+        synchronized (pollsDone) {
+            long remaining;
+            while (pollsFinished < target && poller != null && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    pollsDone.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Asks the polling thread to read the log now rather than at its next
+     * tick, and returns without waiting. Requests made while one is pending
+     * share it, so a burst of local writes costs one extra poll.
+     */
+    private void pollSoon() {
+        ScheduledExecutorService current = poller;
+        if (current != null && pollRequested.compareAndSet(false, true)) {
+            try {
+                current.execute(this::pollQuietly);
+            } catch (RejectedExecutionException e) {
+                pollRequested.set(false);
+            }
+        }
+    }
+
+    private void pollQuietly() {
+        pollingThread = Thread.currentThread();
+        pollRequested.set(false);
+        long generation;
+        synchronized (pollsDone) {
+            generation = ++pollsStarted;
+        }
+        try {
+            poll();
+        } catch (SQLException | RuntimeException e) {
+            // Retried on the next tick; the lag shows in getLagMillis(). An
+            // exception escaping here would cancel the schedule for good.
+        } finally {
+            synchronized (pollsDone) {
+                pollsFinished = generation;
+                pollsDone.notifyAll();
+            }
+        }
+    }
+
+    /** Milliseconds since the log was last read successfully: the bound on how stale listeners can be. */
+    public long getLagMillis() {
+        return System.currentTimeMillis() - lastPollMillis;
+    }
+
+    /** Reads and delivers everything committed past the cursor. */
+    synchronized void poll() throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            long[] bounds = bounds(connection);
+            if (bounds[0] > cursor + 1 || bounds[1] - cursor > MAX_BACKLOG) {
+                reset(bounds[1]);
+            } else {
+                List<Change> batch = new ArrayList<>();
+                if (!deliveredAhead.isEmpty()) {
+                    // Rows below the newest delivered id whose transactions have committed since.
+                    read(connection, "WHERE id > ? AND id < ? ORDER BY id", cursor, deliveredAhead.last(), batch);
+                }
+                int tail;
+                do {
+                    tail = read(connection, "WHERE id > ? ORDER BY id LIMIT ?", highestSeen(), BATCH_SIZE, batch);
+                    if (!batch.isEmpty()) {
+                        deliver(batch);
+                    }
+                    batch = new ArrayList<>();
+                    advance();
+                } while (tail == BATCH_SIZE);
+            }
+            if (++polls % POLLS_PER_PRUNE == 0) {
+                prune(connection);
+            }
+        }
+        lastPollMillis = System.currentTimeMillis();
+    }
+
+    private long highestSeen() {
+        return deliveredAhead.isEmpty() ? cursor : deliveredAhead.last();
+    }
+
+    /** Appends the not yet delivered rows matching {@code where} to {@code batch} and returns how many rows matched. */
+    private int read(Connection connection, String where, long first, long second, List<Change> batch) throws SQLException {
+        int rows = 0;
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "SELECT id, room_number, available, version, kind, check_in, check_out FROM room_changes " + where)) {
+            stmt.setLong(1, first);
+            stmt.setLong(2, second);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows++;
+                    long id = rs.getLong(1);
+                    if (!deliveredAhead.add(id)) {
+                        continue;
+                    }
+                    Date checkIn = rs.getDate(6);
+                    Date checkOut = rs.getDate(7);
+                    batch.add(new Change(id, rs.getInt(2), rs.getBoolean(3), rs.getInt(4), rs.getString(5),
+                            checkIn == null ? null : checkIn.toLocalDate(), checkOut == null ? null : checkOut.toLocalDate()));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /** Moves the cursor over delivered ids, skipping holes that have stayed open too long. */
+    private void advance() {
+        while (!deliveredAhead.isEmpty()) {
+            if (deliveredAhead.first() == cursor + 1) {
+                cursor = deliveredAhead.pollFirst();
+                gapSince = 0;
+            } else if (gapSince == 0) {
+                gapSince = System.currentTimeMillis();
+                return;
+            } else if (System.currentTimeMillis() - gapSince > GAP_TIMEOUT_MILLIS) {
+                cursor = deliveredAhead.first() - 1;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void reset(long maxId) {
+        cursor = maxId;
+        deliveredAhead.clear();
+        gapSince = 0;
+        for (Listener listener : listeners) {
+            resetQuietly(listener);
+        }
+    }
+
+    /**
+     * Hands {@code batch} to every listener. The ids are already recorded as
+     * delivered, so a listener that throws is told to reload instead of
+     * getting the batch again, and the others still get it.
+     */
+    private void deliver(List<Change> batch) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onChanges(batch);
+            } catch (RuntimeException e) {
+                resetQuietly(listener);
+            }
+        }
+    }
+
+    private static void resetQuietly(Listener listener) {
+        try {
+            listener.onReset();
+        } catch (RuntimeException e) {
+            // Its state stays stale until the next reset; the feed itself keeps running.
+        }
+    }
+
+    /** Returns the smallest and largest id in the log; an empty log leaves the cursor where it is. */
+    private long[] bounds(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MIN(id), 0), COALESCE(MAX(id), 0) FROM room_changes")) {
+            rs.next();
+            long min = rs.getLong(1);
+            long max = rs.getLong(2);
+            return max == 0 ? new long[] {0, Math.max(cursor, 0)} : new long[] {min, max};
+        }
+    }
+
+    private void prune(Connection connection) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "DELETE FROM room_changes WHERE changed_at < ? LIMIT 1000")) {
+            stmt.setTimestamp(1, new Timestamp(System.currentTimeMillis() - RETENTION_MILLIS));
+            stmt.executeUpdate();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+        synchronized (pollsDone) {
+            pollsDone.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Streams rooms out of the database one row at a time. Queries project only
+ * the columns the caller uses, read them by index, and use a forward-only
+ * statement with a fetch size, so with {@code useCursorFetch=true} on the
+ * URL Connector/J pulls {@link #FETCH_SIZE} rows per round trip from a
+ * server-side cursor instead of buffering the whole table in memory.
+ */
+public final class RoomLoader {
+    static final int FETCH_SIZE = 1000;
+
+    public interface RoomRow {
+        void accept(int roomNumber, String type, double price, boolean available, int version);
+    }
+
+    private RoomLoader() {
+    }
+
+    /** Passes every room to {@code consumer} in room number order and returns how many there were. */
+    public static int forEachRoom(ConnectionPool pool, RoomRow consumer) throws SQLException {
+        Map<String, String> types = new HashMap<>();
+        int count = 0;
+        try (Connection connection = pool.getConnection();
+             PreparedStatement stmt = streaming(connection, "SELECT room_number, type, price, available, version FROM rooms ORDER BY room_number");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                String type = rs.getString(2);
+                String shared = types.putIfAbsent(type, type);
+                consumer.accept(rs.getInt(1), shared == null ? type : shared, rs.getDouble(3), rs.getBoolean(4), rs.getInt(5));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Prepares a read-only, forward-only statement that fetches {@link #FETCH_SIZE} rows at a time. */
+    static PreparedStatement streaming(Connection connection, String sql) throws SQLException {
+        PreparedStatement stmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        stmt.setFetchSize(FETCH_SIZE);
+        return stmt;
+    }
+}
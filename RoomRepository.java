@@ -0,0 +1,25 @@
+import java.sql.SQLException;
+
+/**
+ * Where rooms live. Implementations are picked by {@link PersistenceConfig}:
+ * MySQL or an embedded database through {@link JdbcRepository}, or
+ * {@link InMemoryRepository} for single-process use and tests.
+ */
+public interface RoomRepository extends AutoCloseable {
+    /** Passes every room to {@code consumer} in room number order and returns how many there were. */
+    int forEachRoom(RoomLoader.RoomRow consumer) throws SQLException;
+
+    /** Adds a room, or changes the type and price of an existing one. */
+    void saveRoom(int roomNumber, String type, double price) throws SQLException;
+
+    /**
+     * Delivers room changes made through any instance sharing this store.
+     * Changes made through this instance are delivered before the call that
+     * made them returns, unless the store cannot be read back in time; they
+     * then follow with the next changes read.
+     */
+    void subscribe(RoomChangeFeed.Listener listener) throws SQLException;
+
+    @Override
+    void close();
+}
@@ -0,0 +1,381 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Room inventory kept as parallel primitive arrays rather than one object
+ * per room: room numbers in an {@code int[]}, a {@code byte} type code per
+ * room, versions in an {@code int[]}, and availability as a bitset indexed
+ * by slot. Prices come from the type table; only rooms priced differently
+ * from their type are stored individually. A {@link BookingService.RoomInfo}
+ * is built only when a caller asks for a room. Slots are stable and
+ * assigned in insertion order.
+ *
+ * <p>The first type codes are the {@link RoomType} ordinals; other type
+ * names found in the database get codes after them, priced at the first
+ * such room seen.
+ *
+ * <p>Reads never lock. {@link #take} is a compare-and-set on the room's
+ * bit, so two threads can never both take the same room. Adding rooms and
+ * applying versioned changes are serialized; a room being added may or may
+ * not be seen by a concurrent read.
+ */
+public class RoomStore {
+    private static final int NO_SLOT = -1;
+    private static final int MAX_TYPES = 128;
+    /** Availability bits per chunk; chunks are never copied, so a compare-and-set is never lost to growth. */
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_WORDS = 1 << (CHUNK_SHIFT - 6);
+
+    /**
+     * Open-addressed index from room number to slot + 1 (0 is empty); the
+     * key of an entry is {@code numbers[slot]}. An entry is set only after
+     * the slot's arrays are written, so a reader that finds it sees them.
+     */
+    private volatile AtomicIntegerArray index = new AtomicIntegerArray(16);
+
+    private volatile int[] numbers = new int[16];
+    private volatile byte[] typeCodes = new byte[16];
+    /** Allocated with the first nonzero version; stores that never see the change log do without. */
+    private int[] versions;
+    private volatile int size;
+
+    private volatile String[] typeNames = new String[0];
+    private volatile double[] typePrices = new double[0];
+    private final Map<Integer, Double> priceBySlot = new ConcurrentHashMap<>();
+    private volatile AtomicLongArray[] availability = {new AtomicLongArray(CHUNK_WORDS)};
+
+    public RoomStore() {
+        for (RoomType type : RoomType.values()) {
+            addType(type.getLabel(), type.getPrice());
+        }
+    }
+
+    public void add(int roomNumber, String type, double price, boolean isAvailable) {
+        add(roomNumber, type, price, isAvailable, 0);
+    }
+
+    /** Adds or replaces a room as of {@code version} of its database row. */
+    public synchronized void add(int roomNumber, String type, double price, boolean isAvailable, int version) {
+        int code = typeCode(type, price);
+        int slot = slotOf(roomNumber);
+        boolean added = slot == NO_SLOT;
+        if (added) {
+            slot = size;
+            ensureSlotCapacity(slot + 1);
+            numbers[slot] = roomNumber;
+        }
+        typeCodes[slot] = (byte) code;
+        setVersion(slot, version);
+        if (price == typePrices[code]) {
+            priceBySlot.remove(slot);
+        } else {
+            priceBySlot.put(slot, price);
+        }
+        setBit(slot, isAvailable);
+        if (added) {
+            size = slot + 1;
+            insertKey(roomNumber, slot);
+        }
+    }
+
+    /** Returns the room, or {@code null} if there is no such room. */
+    public BookingService.RoomInfo get(int roomNumber) {
+        int slot = slotOf(roomNumber);
+        return slot == NO_SLOT ? null : info(slot);
+    }
+
+    public boolean contains(int roomNumber) {
+        return slotOf(roomNumber) != NO_SLOT;
+    }
+
+    public boolean isAvailable(int roomNumber) {
+        int slot = slotOf(roomNumber);
+        return slot != NO_SLOT && bit(slot);
+    }
+
+    public void setAvailable(int roomNumber, boolean isAvailable) {
+        int slot = slotOf(roomNumber);
+        if (slot == NO_SLOT) {
+            throw new IllegalArgumentException("Unknown room " + roomNumber);
+        }
+        setBit(slot, isAvailable);
+    }
+
+    /**
+     * Marks the room unavailable if it is available right now.
+     *
+     * @return {@code false} if the room is unknown or already taken
+     */
+    public boolean take(int roomNumber) {
+        int slot = slotOf(roomNumber);
+        return slot != NO_SLOT && compareAndSetBit(slot, true, false);
+    }
+
+    /** Makes every known room in {@code roomNumbers} available again. */
+    public void releaseAll(int[] roomNumbers) {
+        for (int roomNumber : roomNumbers) {
+            int slot = slotOf(roomNumber);
+            if (slot != NO_SLOT) {
+                setBit(slot, true);
+            }
+        }
+    }
+
+    /**
+     * Applies a change made elsewhere if it is newer than what the store
+     * holds; stale and repeated changes are ignored.
+     *
+     * @return {@code false} if the room is unknown or {@code version} is not newer
+     */
+    public synchronized boolean apply(int roomNumber, boolean isAvailable, int version) {
+        int slot = slotOf(roomNumber);
+        if (slot == NO_SLOT || version <= versionOf(slot)) {
+            return false;
+        }
+        setVersion(slot, version);
+        setBit(slot, isAvailable);
+        return true;
+    }
+
+    public List<BookingService.RoomInfo> available() {
+        return collect(availableSlots(-1));
+    }
+
+    public List<BookingService.RoomInfo> available(String type) {
+        int code = codeOf(type);
+        return code < 0 ? new ArrayList<>() : collect(availableSlots(code));
+    }
+
+    /** Every type name known to the store, standard types first. */
+    public List<String> types() {
+        return Arrays.asList(typeNames.clone());
+    }
+
+    public int availableCount(String type) {
+        int code = codeOf(type);
+        return code < 0 ? 0 : availableSlots(code).cardinality();
+    }
+
+    /**
+     * Rooms of {@code type} (or of any type when {@code null}) that are not
+     * held open-ended and are free in {@code calendar} for every night of the stay.
+     *
+     * @throws IllegalArgumentException if the calendar does not cover the stay
+     */
+    public List<BookingService.RoomInfo> available(String type, AvailabilityCalendar calendar, LocalDate from, LocalDate to) {
+        if (!calendar.covers(from, to)) {
+            throw new IllegalArgumentException("Stay is outside " + calendar.getHorizonStart() + " to " + calendar.getHorizonEnd());
+        }
+        int code = type == null ? -1 : codeOf(type);
+        if (type != null && code < 0) {
+            return new ArrayList<>();
+        }
+        return collect(calendar.free(availableSlots(code), from, to));
+    }
+
+    /** Returns the stable slot of a room, as used by {@link AvailabilityCalendar}, or -1. */
+    public int slot(int roomNumber) {
+        return slotOf(roomNumber);
+    }
+
+    public List<BookingService.RoomInfo> all() {
+        int count = size;
+        List<BookingService.RoomInfo> result = new ArrayList<>(count);
+        for (int slot = 0; slot < count; slot++) {
+            result.add(info(slot));
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** A copy of the availability bits, limited to rooms of type {@code code} unless it is -1. */
+    private BitSet availableSlots(int code) {
+        int count = size;
+        byte[] types = typeCodes;
+        AtomicLongArray[] chunks = availability;
+        long[] words = new long[(count + 63) >>> 6];
+        for (int w = 0; w < words.length; w++) {
+            long word = chunks[w >>> (CHUNK_SHIFT - 6)].get(w & (CHUNK_WORDS - 1));
+            if (code >= 0) {
+                for (long bits = word; bits != 0; bits &= bits - 1) {
+                    int slot = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    if (slot < count && types[slot] != code) {
+                        word &= ~(1L << slot);
+                    }
+                }
+            }
+            words[w] = word;
+        }
+        if ((count & 63) != 0) {
+            words[words.length - 1] &= (1L << count) - 1;
+        }
+        return BitSet.valueOf(words);
+    }
+
+    private List<BookingService.RoomInfo> collect(BitSet slots) {
+        List<BookingService.RoomInfo> result = new ArrayList<>(slots.cardinality());
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+            result.add(info(slot));
+        }
+        return result;
+    }
+
+    private BookingService.RoomInfo info(int slot) {
+        int code = typeCodes[slot];
+        Double price = priceBySlot.isEmpty() ? null : priceBySlot.get(slot);
+        return new BookingService.RoomInfo(numbers[slot], typeNames[code],
+                price == null ? typePrices[code] : price, bit(slot));
+    }
+
+    private boolean bit(int slot) {
+        return (availability[slot >>> CHUNK_SHIFT].get((slot >>> 6) & (CHUNK_WORDS - 1)) & (1L << slot)) != 0;
+    }
+
+    private void setBit(int slot, boolean value) {
+        compareAndSetBit(slot, !value, value);
+    }
+
+    /** Flips the slot's bit from {@code expect} to {@code update}; {@code false} if it did not hold {@code expect}. */
+    private boolean compareAndSetBit(int slot, boolean expect, boolean update) {
+        AtomicLongArray chunk = availability[slot >>> CHUNK_SHIFT];
+        int word = (slot >>> 6) & (CHUNK_WORDS - 1);
+        long mask = 1L << slot;
+        while (true) {
+            long current = chunk.get(word);
+            if (((current & mask) != 0) != expect) {
+                return false;
+            }
+            long next = update ? current | mask : current & ~mask;
+            if (chunk.compareAndSet(word, current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /** The code of {@code type}, or -1 if no room has it. */
+    private int codeOf(String type) {
+        RoomType standard = RoomType.of(type);
+        if (standard != null) {
+            return standard.ordinal();
+        }
+        String[] names = typeNames;
+        for (int code = RoomType.values().length; code < names.length; code++) {
+            if (names[code].equals(type)) {
+                return code;
+            }
+        }
+        return -1;
+    }
+
+    private int typeCode(String type, double price) {
+        int code = codeOf(type);
+        return code >= 0 ? code : addType(type, price);
+    }
+
+    private int addType(String type, double price) {
+        int code = typeNames.length;
+        if (code == MAX_TYPES) {
+            throw new IllegalStateException("More than " + MAX_TYPES + " room types");
+        }
+        double[] prices = Arrays.copyOf(typePrices, code + 1);
+        prices[code] = price;
+        typePrices = prices;
+        String[] names = Arrays.copyOf(typeNames, code + 1);
+        names[code] = type;
+        typeNames = names;
+        return code;
+    }
+
+    private int versionOf(int slot) {
+        return versions == null ? 0 : versions[slot];
+    }
+
+    private void setVersion(int slot, int version) {
+        if (versions == null) {
+            if (version == 0) {
+                return;
+            }
+            versions = new int[numbers.length];
+        }
+        versions[slot] = version;
+    }
+
+    private int slotOf(int roomNumber) {
+        AtomicIntegerArray table = index;
+        int mask = table.length() - 1;
+        for (int i = hash(roomNumber) & mask; ; i = (i + 1) & mask) {
+            int entry = table.get(i);
+            if (entry == 0) {
+                return NO_SLOT;
+            }
+            if (numbers[entry - 1] == roomNumber) {
+                return entry - 1;
+            }
+        }
+    }
+
+    private void insertKey(int roomNumber, int slot) {
+        AtomicIntegerArray table = index;
+        if (size * 4 > table.length() * 3) {
+            table = rehash(table, table.length() * 2);
+        }
+        int mask = table.length() - 1;
+        int i = hash(roomNumber) & mask;
+        while (table.get(i) != 0) {
+            i = (i + 1) & mask;
+        }
+        table.set(i, slot + 1);
+    }
+
+    /** Builds a larger index off to the side and publishes it once complete. */
+    private AtomicIntegerArray rehash(AtomicIntegerArray old, int capacity) {
+        AtomicIntegerArray table = new AtomicIntegerArray(capacity);
+        int[] keys = numbers;
+        for (int j = 0; j < old.length(); j++) {
+            int entry = old.get(j);
+            if (entry != 0) {
+                int i = hash(keys[entry - 1]) & (capacity - 1);
+                while (table.get(i) != 0) {
+                    i = (i + 1) & (capacity - 1);
+                }
+                table.set(i, entry);
+            }
+        }
+        index = table;
+        return table;
+    }
+
+    private void ensureSlotCapacity(int required) {
+        if (required > numbers.length) {
+            int capacity = Math.max(required, numbers.length + (numbers.length >> 1));
+            typeCodes = Arrays.copyOf(typeCodes, capacity);
+            numbers = Arrays.copyOf(numbers, capacity);
+            if (versions != null) {
+                versions = Arrays.copyOf(versions, capacity);
+            }
+        }
+        int chunks = ((required - 1) >>> CHUNK_SHIFT) + 1;
+        if (chunks > availability.length) {
+            AtomicLongArray[] grown = Arrays.copyOf(availability, chunks);
+            for (int c = availability.length; c < chunks; c++) {
+                grown[c] = new AtomicLongArray(CHUNK_WORDS);
+            }
+            availability = grown;
+        }
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
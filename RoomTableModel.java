@@ -0,0 +1,255 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Table model over the {@code rooms} table that only fetches the pages a
+ * {@link javax.swing.JTable} actually paints. Pages are addressed by keyset:
+ * on refresh the model streams the room numbers once, keeping the last room
+ * number of every page, and each page is then a range query after the
+ * previous page's last key ({@code room_number > ? ... ORDER BY room_number
+ * LIMIT ?}), which any MySQL version serves from the primary key. Rooms
+ * added or removed after a refresh never move a row onto another page;
+ * they show up at the next refresh. Changes from other desks only refetch
+ * the pages holding the changed rooms, so the row count and page keys are
+ * only rescanned by {@link #refresh}; until then a page of the
+ * available-only view shows blank rows for rooms booked since. Loaded pages
+ * are kept in a small LRU cache; rows of a page that has not arrived yet
+ * read as "Loading...".
+ */
+public class RoomTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    static final int PAGE_SIZE = 100;
+    private static final int MAX_CACHED_PAGES = 20;
+    private static final String[] COLUMNS = {"Room", "Type", "Price", "Status"};
+
+    private final AsyncDb db;
+    private final Supplier<ConnectionPool> pool;
+    private boolean availableOnly;
+    private int rowCount;
+    private int[] pageEnds = new int[0];
+    private long refreshes;
+    private long pageGeneration;
+
+    private final Set<Integer> loading = new HashSet<>();
+    private final Set<Integer> stale = new HashSet<>();
+    private final Map<Integer, Object[][]> pages = new LinkedHashMap<Integer, Object[][]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Object[][]> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+
+    public RoomTableModel(AsyncDb db, Supplier<ConnectionPool> pool) {
+        this.db = db;
+        this.pool = pool;
+    }
+
+    /**
+     * Reloads the row count and page keys, showing every room or only
+     * available ones. The task's result ends with the new row count.
+     */
+    public AsyncDb.Task<int[]> refresh(boolean availableOnly) {
+        long refresh = ++refreshes;
+        AsyncDb.Task<int[]> task = db.submit(cancellation -> loadPageEnds(availableOnly, cancellation));
+        task.onEdt(ends -> {
+            if (refresh != refreshes) {
+                return;
+            }
+            this.availableOnly = availableOnly;
+            pageGeneration++;
+            pages.clear();
+            loading.clear();
+            stale.clear();
+            rowCount = ends[ends.length - 1];
+            pageEnds = Arrays.copyOf(ends, ends.length - 1);
+            fireTableDataChanged();
+        }, error -> {
+        });
+        return task;
+    }
+
+    /**
+     * Marks cached pages stale, e.g. after another desk booked a room. Stale
+     * rows keep showing until their page is fetched again, which happens the
+     * next time the table paints them.
+     */
+    public void invalidate() {
+        pageGeneration++;
+        loading.clear();
+        stale.addAll(pages.keySet());
+        fireTableDataChanged();
+    }
+
+    /**
+     * Marks stale only the cached pages whose key range holds one of
+     * {@code roomNumbers}, so a change from another desk costs a page fetch
+     * rather than a rescan of every room.
+     */
+    public void invalidate(Collection<Integer> roomNumbers) {
+        pageGeneration++;
+        loading.clear();
+        for (int roomNumber : roomNumbers) {
+            int found = Arrays.binarySearch(pageEnds, roomNumber);
+            int pageIndex = found >= 0 ? found : -found - 1;
+            if (pageIndex < pageEnds.length && pages.containsKey(pageIndex) && stale.add(pageIndex)) {
+                int first = pageIndex * PAGE_SIZE;
+                fireTableRowsUpdated(first, Math.min(rowCount, first + PAGE_SIZE) - 1);
+            }
+        }
+    }
+
+    public boolean isAvailableOnly() {
+        return availableOnly;
+    }
+
+    /** Returns the room number shown in {@code row}, or -1 if its page is not loaded. */
+    public int roomNumberAt(int row) {
+        Object[][] page = pages.get(row / PAGE_SIZE);
+        int offset = row % PAGE_SIZE;
+        return page == null || offset >= page.length ? -1 : (Integer) page[offset][0];
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int pageIndex = row / PAGE_SIZE;
+        Object[][] page = pages.get(pageIndex);
+        if (page == null || stale.contains(pageIndex)) {
+            requestPage(pageIndex);
+        }
+        if (page == null) {
+            return column == 1 ? "Loading..." : null;
+        }
+        int offset = row % PAGE_SIZE;
+        return offset < page.length ? page[offset][column] : null;
+    }
+
+    private void requestPage(int pageIndex) {
+        if (pageIndex >= pageEnds.length || !loading.add(pageIndex)) {
+            return;
+        }
+        long generation = pageGeneration;
+        int afterKey = pageIndex == 0 ? Integer.MIN_VALUE : pageEnds[pageIndex - 1];
+        int lastKey = pageEnds[pageIndex];
+        boolean onlyAvailable = availableOnly;
+        db.submit(cancellation -> loadPage(afterKey, lastKey, onlyAvailable)).onEdt(rows -> {
+            if (generation != pageGeneration) {
+                return;
+            }
+            loading.remove(pageIndex);
+            stale.remove(pageIndex);
+            pages.put(pageIndex, rows);
+            int first = pageIndex * PAGE_SIZE;
+            fireTableRowsUpdated(first, Math.min(rowCount, first + PAGE_SIZE) - 1);
+        }, error -> {
+            if (generation == pageGeneration) {
+                loading.remove(pageIndex);
+            }
+        });
+    }
+
+    /**
+     * Streams the room numbers in order and returns the last key of every
+     * page followed by the total row count.
+     */
+    private int[] loadPageEnds(boolean onlyAvailable, AsyncDb.Cancellation cancellation) throws SQLException {
+        try (Connection connection = pool.get().getConnection();
+             PreparedStatement stmt = RoomLoader.streaming(connection,
+                     "SELECT room_number FROM rooms" + (onlyAvailable ? " WHERE available = true" : "") + " ORDER BY room_number")) {
+            cancellation.track(stmt);
+            int[] ends = new int[16];
+            int pages = 0;
+            int total = 0;
+            int last = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    last = rs.getInt(1);
+                    if (++total % PAGE_SIZE == 0) {
+                        if (pages + 1 >= ends.length) {
+                            ends = Arrays.copyOf(ends, ends.length * 2);
+                        }
+                        ends[pages++] = last;
+                    }
+                }
+            }
+            ends = Arrays.copyOf(ends, pages + 2);
+            if (total % PAGE_SIZE != 0) {
+                ends[pages++] = last;
+            }
+            ends[pages++] = total;
+            return Arrays.copyOf(ends, pages);
+        }
+    }
+
+    /**
+     * The summed list price of {@code roomNumbers} (distinct), read with one
+     * primary-key query rather than through the pages. Call it off the event
+     * thread.
+     *
+     * @throws IllegalArgumentException if a room does not exist
+     */
+    public double listPrice(int[] roomNumbers) throws SQLException {
+        try (Connection connection = pool.get().getConnection();
+             PreparedStatement stmt = connection.prepareStatement(
+                     "SELECT price FROM rooms WHERE room_number IN (" + BookingDao.placeholders(roomNumbers.length) + ")")) {
+            for (int i = 0; i < roomNumbers.length; i++) {
+                stmt.setInt(i + 1, roomNumbers[i]);
+            }
+            double total = 0;
+            int found = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    total += rs.getDouble(1);
+                    found++;
+                }
+            }
+            if (found < roomNumbers.length) {
+                throw new IllegalArgumentException("Unknown room in " + Arrays.toString(roomNumbers));
+            }
+            return total;
+        }
+    }
+
+    private Object[][] loadPage(int afterKey, int lastKey, boolean onlyAvailable) throws SQLException {
+        try (Connection connection = pool.get().getConnection();
+             PreparedStatement stmt = connection.prepareStatement(
+                     "SELECT room_number, type, price, available FROM rooms WHERE room_number > ? AND room_number <= ?"
+                             + (onlyAvailable ? " AND available = true" : "") + " ORDER BY room_number LIMIT ?")) {
+            stmt.setInt(1, afterKey);
+            stmt.setInt(2, lastKey);
+            stmt.setInt(3, PAGE_SIZE);
+            Object[][] rows = new Object[PAGE_SIZE][];
+            int count = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    rows[count++] = new Object[] {rs.getInt(1), rs.getString(2), rs.getDouble(3), rs.getBoolean(4) ? "Available" : "Booked"};
+                }
+            }
+            return Arrays.copyOf(rows, count);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/** The standard room types and their list prices per night. */
+public enum RoomType {
+    SINGLE("Single", 1000),
+    DOUBLE("Double", 1700),
+    SUITE("Suite", 3000);
+
+    private static final RoomType[] VALUES = values();
+
+    private final String label;
+    private final double price;
+
+    RoomType(String label, double price) {
+        this.label = label;
+        this.price = price;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    /** Returns the type with the given label, ignoring case, or {@code null} if it is not a standard type. */
+    public static RoomType of(String label) {
+        if (label == null) {
+            return null;
+        }
+        String trimmed = label.trim();
+        for (RoomType type : VALUES) {
+            if (type.label.equalsIgnoreCase(trimmed)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /** The list price for {@code label}, or 0 for a type that is not standard. */
+    public static double priceOf(String label) {
+        RoomType type = of(label);
+        return type == null ? 0 : type.price;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,16 @@
+import java.util.Arrays;
+
+public class RoomUnavailableException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    private final int[] roomNumbers;
+
+    public RoomUnavailableException(int[] roomNumbers) {
+        super("Room(s) " + Arrays.toString(roomNumbers) + " are no longer available");
+        this.roomNumbers = roomNumbers.clone();
+    }
+
+    public int[] getRoomNumbers() {
+        return roomNumbers.clone();
+    }
+}
@@ -0,0 +1,205 @@
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ordered, idempotent schema changes applied at startup. The applied level is
+ * recorded in {@code schema_version}; new steps are appended, never edited.
+ *
+ * <p>MySQL commits DDL implicitly, so a step can take effect without its
+ * version being recorded if the process dies in between. Every step is
+ * therefore safe to run again: tables are created if not exists, and columns
+ * and indexes are added only when the catalog does not list them yet.
+ */
+public final class SchemaMigrations {
+    private interface Step {
+        void apply(Connection connection) throws SQLException;
+    }
+
+    private static final List<Step> STEPS = new ArrayList<>();
+
+    static {
+        STEPS.add(c -> addColumn(c, "rooms", "version", "INT NOT NULL DEFAULT 0"));
+        STEPS.add(c -> execute(c, "CREATE TABLE IF NOT EXISTS booking_rooms ("
+                + "booking_id BIGINT NOT NULL, "
+                + "room_number INT NOT NULL, "
+                + "PRIMARY KEY (booking_id, room_number), "
+                + "INDEX idx_booking_rooms_room (room_number, booking_id))"));
+        STEPS.add(SchemaMigrations::backfillBookingRooms);
+        STEPS.add(c -> execute(c, "ALTER TABLE bookings MODIFY rooms VARCHAR(255) NULL"));
+        STEPS.add(c -> {
+            addColumn(c, "booking_rooms", "check_in", "DATE NULL");
+            addColumn(c, "booking_rooms", "check_out", "DATE NULL");
+        });
+        STEPS.add(c -> execute(c, "UPDATE booking_rooms SET check_in = CURRENT_DATE WHERE check_in IS NULL"));
+        STEPS.add(c -> createIndex(c, "booking_rooms", "idx_booking_rooms_stay", "room_number, check_out, check_in"));
+        STEPS.add(c -> execute(c, "CREATE TABLE IF NOT EXISTS room_changes ("
+                + "id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY, "
+                + "room_number INT NOT NULL, "
+                + "available BOOLEAN NOT NULL, "
+                + "version INT NOT NULL, "
+                + "kind VARCHAR(8) NOT NULL, "
+                + "booking_id BIGINT NULL, "
+                + "check_in DATE NULL, "
+                + "check_out DATE NULL, "
+                + "changed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, "
+                + "INDEX idx_room_changes_changed_at (changed_at))"));
+        STEPS.add(c -> {
+            createIndex(c, "bookings", "idx_bookings_customer_name", "customer_name");
+            createIndex(c, "bookings", "idx_bookings_contact", "contact");
+            createIndex(c, "bookings", "idx_bookings_email", "email");
+        });
+        STEPS.add(c -> execute(c, "CREATE TABLE IF NOT EXISTS booking_name_words ("
+                + "word VARCHAR(100) NOT NULL, "
+                + "booking_id BIGINT NOT NULL, "
+                + "PRIMARY KEY (word, booking_id), "
+                + "INDEX idx_booking_name_words_booking (booking_id))"));
+        STEPS.add(SchemaMigrations::backfillNameWords);
+        STEPS.add(c -> addColumn(c, "bookings", "cancelled_at", "TIMESTAMP NULL"));
+    }
+
+    private SchemaMigrations() {
+    }
+
+    public static void migrate(ConnectionPool pool) throws SQLException {
+        try (Connection connection = pool.getConnection()) {
+            // The original tables, as the desks have always expected them; only a fresh database lacks them.
+            execute(connection, "CREATE TABLE IF NOT EXISTS rooms ("
+                    + "room_number INT NOT NULL PRIMARY KEY, "
+                    + "type VARCHAR(20) NOT NULL, "
+                    + "price DOUBLE NOT NULL, "
+                    + "available BOOLEAN NOT NULL DEFAULT TRUE)");
+            execute(connection, "CREATE TABLE IF NOT EXISTS bookings ("
+                    + "id BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY, "
+                    + "customer_name VARCHAR(100), "
+                    + "contact VARCHAR(20), "
+                    + "address VARCHAR(255), "
+                    + "email VARCHAR(100), "
+                    + "rooms VARCHAR(255))");
+            execute(connection, "CREATE TABLE IF NOT EXISTS schema_version (version INT NOT NULL)");
+            int current = currentVersion(connection);
+            for (int version = current + 1; version <= STEPS.size(); version++) {
+                connection.setAutoCommit(false);
+                STEPS.get(version - 1).apply(connection);
+                try (PreparedStatement stmt = connection.prepareStatement("UPDATE schema_version SET version = ?")) {
+                    stmt.setInt(1, version);
+                    stmt.executeUpdate();
+                }
+                connection.commit();
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static int currentVersion(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version FROM schema_version")) {
+            if (rs.next()) {
+                return rs.getInt(1);
+            }
+        }
+        execute(connection, "INSERT INTO schema_version (version) VALUES (0)");
+        return 0;
+    }
+
+    private static void backfillBookingRooms(Connection connection) throws SQLException {
+        try (Statement select = connection.createStatement();
+             PreparedStatement insert = connection.prepareStatement(
+                     "INSERT IGNORE INTO booking_rooms (booking_id, room_number) VALUES (?, ?)")) {
+            select.setFetchSize(1000);
+            int pending = 0;
+            try (ResultSet rs = select.executeQuery("SELECT id, rooms FROM bookings WHERE rooms IS NOT NULL")) {
+                while (rs.next()) {
+                    long bookingId = rs.getLong(1);
+                    for (String roomNumber : rs.getString(2).split(",")) {
+                        if (roomNumber.trim().isEmpty()) {
+                            continue;
+                        }
+                        insert.setLong(1, bookingId);
+                        insert.setInt(2, Integer.parseInt(roomNumber.trim()));
+                        insert.addBatch();
+                        if (++pending == 1000) {
+                            insert.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                }
+            }
+            if (pending > 0) {
+                insert.executeBatch();
+            }
+        }
+    }
+
+    private static void backfillNameWords(Connection connection) throws SQLException {
+        try (Statement select = connection.createStatement();
+             PreparedStatement insert = connection.prepareStatement(
+                     "INSERT IGNORE INTO booking_name_words (word, booking_id) VALUES (?, ?)")) {
+            select.setFetchSize(1000);
+            int pending = 0;
+            try (ResultSet rs = select.executeQuery("SELECT id, customer_name FROM bookings WHERE customer_name IS NOT NULL")) {
+                while (rs.next()) {
+                    for (String word : BookingDao.laterNameWords(rs.getString(2))) {
+                        insert.setString(1, word);
+                        insert.setLong(2, rs.getLong(1));
+                        insert.addBatch();
+                        if (++pending == 1000) {
+                            insert.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                }
+            }
+            if (pending > 0) {
+                insert.executeBatch();
+            }
+        }
+    }
+
+    private static void addColumn(Connection connection, String table, String column, String definition) throws SQLException {
+        if (!hasColumn(connection, table, column)) {
+            execute(connection, "ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        }
+    }
+
+    private static void createIndex(Connection connection, String table, String index, String columns) throws SQLException {
+        if (!hasIndex(connection, table, index)) {
+            execute(connection, "CREATE INDEX " + index + " ON " + table + " (" + columns + ")");
+        }
+    }
+
+    private static boolean hasColumn(Connection connection, String table, String column) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        try (ResultSet rs = meta.getColumns(connection.getCatalog(), null, table, null)) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("COLUMN_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasIndex(Connection connection, String table, String index) throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        try (ResultSet rs = meta.getIndexInfo(connection.getCatalog(), null, table, false, false)) {
+            while (rs.next()) {
+                if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate(sql);
+        }
+    }
+}
@@ -0,0 +1,354 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Times every statement run on a wrapped connection. Statements are grouped
+ * by shape, their SQL with literals replaced by {@code ?} and IN lists
+ * collapsed, and each shape keeps a latency histogram, a row count and a
+ * round-trip count (one per execute or batch). Executions slower than the
+ * threshold are appended to the slow-query log by shape, so neither bound
+ * parameters nor literals written into the SQL ever reach the file.
+ *
+ * <p>A borrowed connection is one logical operation. When it is closed, any
+ * shape executed individually at least {@code repeatThreshold} times on it
+ * is logged as repeated, which is how a per-room {@code UPDATE} in a loop
+ * shows up; batching such statements makes the warning go away.
+ *
+ * <p>The busiest shapes are published through {@link HotelMetrics}.
+ */
+public class StatementProfiler {
+    private static final int MAX_CACHED_SHAPES = 10_000;
+    private static final int MAX_REPORTED_SHAPES = 50;
+    private static final int MAX_LOGGED_SQL = 1000;
+
+    public static final class ShapeStats {
+        private final String shape;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder roundTrips = new LongAdder();
+        private final LongAdder repeats = new LongAdder();
+
+        ShapeStats(String shape) {
+            this.shape = shape;
+        }
+
+        public String getShape() {
+            return shape;
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        public long getRoundTrips() {
+            return roundTrips.sum();
+        }
+
+        /** Logical operations that ran this shape repeatedly instead of batching it. */
+        public long getRepeats() {
+            return repeats.sum();
+        }
+    }
+
+    private final Map<String, String> shapeBySql = new ConcurrentHashMap<>();
+    private final Map<String, ShapeStats> stats = new ConcurrentHashMap<>();
+    private final long slowNanos;
+    private final Path slowLog;
+    private final int repeatThreshold;
+    private BufferedWriter slowLogWriter;
+    private boolean slowLogFailed;
+
+    /**
+     * @param slowLog file the slow and repeated statements are appended to, or
+     *                {@code null} to only count them
+     */
+    public StatementProfiler(long slowMillis, Path slowLog, int repeatThreshold) {
+        this.slowNanos = TimeUnit.MILLISECONDS.toNanos(slowMillis);
+        this.slowLog = slowLog;
+        this.repeatThreshold = repeatThreshold;
+        HotelMetrics metrics = HotelMetrics.get();
+        metrics.gauge("hotel_sql_seconds", "Total execution time of the busiest statement shapes", "sql",
+                () -> report(s -> s.latency.getSumNanos() / 1e9));
+        metrics.gauge("hotel_sql_round_trips", "Executions and batches of the busiest statement shapes", "sql",
+                () -> report(ShapeStats::getRoundTrips));
+        metrics.gauge("hotel_sql_rows", "Rows read or changed by the busiest statement shapes", "sql",
+                () -> report(ShapeStats::getRows));
+        metrics.gauge("hotel_sql_repeats", "Operations that ran a statement shape repeatedly instead of batching it", "sql",
+                () -> report(ShapeStats::getRepeats));
+    }
+
+    /** Returns a connection that profiles every statement created from it. */
+    public Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class}, new ConnectionHandler(connection));
+    }
+
+    /** Statistics for every shape seen so far, busiest (by total time) first. */
+    public List<ShapeStats> snapshot() {
+        List<ShapeStats> shapes = new ArrayList<>(stats.values());
+        shapes.sort((a, b) -> Long.compare(b.latency.getSumNanos(), a.latency.getSumNanos()));
+        return shapes;
+    }
+
+    private Map<String, Number> report(Function<ShapeStats, Number> value) {
+        Map<String, Number> values = new LinkedHashMap<>();
+        for (ShapeStats shape : snapshot()) {
+            if (values.size() == MAX_REPORTED_SHAPES) {
+                break;
+            }
+            values.put(shape.shape, value.apply(shape));
+        }
+        return values;
+    }
+
+    /**
+     * The SQL with string and numeric literals replaced by {@code ?},
+     * whitespace collapsed and lists of placeholders written as {@code ?...},
+     * so statements that differ only in their values share a shape.
+     */
+    static String shape(String sql) {
+        StringBuilder out = new StringBuilder(sql.length());
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            char previous = out.length() == 0 ? ' ' : out.charAt(out.length() - 1);
+            if (Character.isWhitespace(c)) {
+                while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                if (out.length() > 0) {
+                    out.append(' ');
+                }
+            } else if (c == '\'') {
+                i++;
+                while (i < sql.length()) {
+                    if (sql.charAt(i) == '\'' && (i + 1 == sql.length() || sql.charAt(i + 1) != '\'')) {
+                        break;
+                    }
+                    i += sql.charAt(i) == '\'' ? 2 : 1;
+                }
+                i++;
+                out.append('?');
+            } else if (Character.isDigit(c) && !Character.isLetterOrDigit(previous) && previous != '_') {
+                while (i < sql.length() && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                out.append('?');
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        return out.toString().trim().replaceAll("\\?(\\s*,\\s*\\?)+", "?...");
+    }
+
+    private ShapeStats statsFor(String sql) {
+        String shape = shapeBySql.get(sql);
+        if (shape == null) {
+            shape = shape(sql);
+            if (shapeBySql.size() < MAX_CACHED_SHAPES) {
+                shapeBySql.put(sql, shape);
+            }
+        }
+        return stats.computeIfAbsent(shape, ShapeStats::new);
+    }
+
+    private void executed(ShapeStats shape, long nanos, long rows) {
+        shape.latency.record(nanos);
+        shape.roundTrips.increment();
+        if (rows > 0) {
+            shape.rows.add(rows);
+        }
+        if (nanos >= slowNanos) {
+            log("SLOW " + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms" + (rows >= 0 ? ", " + rows + " rows" : "") + ": "
+                    + (shape.shape.length() > MAX_LOGGED_SQL ? shape.shape.substring(0, MAX_LOGGED_SQL) + "..." : shape.shape));
+        }
+    }
+
+    private synchronized void log(String line) {
+        if (slowLog == null || slowLogFailed) {
+            return;
+        }
+        try {
+            if (slowLogWriter == null) {
+                slowLogWriter = Files.newBufferedWriter(slowLog, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            slowLogWriter.write(LocalDateTime.now() + " " + line);
+            slowLogWriter.newLine();
+            slowLogWriter.flush();
+        } catch (IOException e) {
+            // Profiling must never break a booking; stop logging and keep counting.
+            slowLogFailed = true;
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection connection;
+        /** Individual executions per shape during this lease. */
+        private final Map<ShapeStats, int[]> executions = new HashMap<>();
+
+        ConnectionHandler(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("close".equals(name)) {
+                reportRepeats();
+            }
+            Object result = StatementProfiler.invoke(connection, method, args);
+            if (result instanceof Statement) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : null;
+                Class<?> type = result instanceof CallableStatement ? CallableStatement.class
+                        : result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+                return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type},
+                        new StatementHandler((Statement) result, sql, this));
+            }
+            return result;
+        }
+
+        synchronized void counted(ShapeStats shape) {
+            executions.computeIfAbsent(shape, s -> new int[1])[0]++;
+        }
+
+        private synchronized void reportRepeats() {
+            for (Map.Entry<ShapeStats, int[]> entry : executions.entrySet()) {
+                if (entry.getValue()[0] >= repeatThreshold) {
+                    entry.getKey().repeats.increment();
+                    log("REPEATED " + entry.getValue()[0] + "x in one operation, consider a batch or a set-based query: "
+                            + entry.getKey().shape);
+                }
+            }
+            executions.clear();
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement statement;
+        private final String preparedSql;
+        private final ConnectionHandler operation;
+        private String batchSql;
+
+        StatementHandler(Statement statement, String preparedSql, ConnectionHandler operation) {
+            this.statement = statement;
+            this.preparedSql = preparedSql;
+            this.operation = operation;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            boolean hasSql = args != null && args.length > 0 && args[0] instanceof String;
+            if ("addBatch".equals(name) && hasSql && batchSql == null) {
+                batchSql = (String) args[0];
+            }
+            boolean batch = name.equals("executeBatch") || name.equals("executeLargeBatch");
+            if (!batch && !name.startsWith("execute")) {
+                return StatementProfiler.invoke(statement, method, args);
+            }
+            String sql = hasSql ? (String) args[0] : batch && batchSql != null ? batchSql : preparedSql;
+            if (sql == null) {
+                return StatementProfiler.invoke(statement, method, args);
+            }
+            ShapeStats shape = statsFor(sql);
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = StatementProfiler.invoke(statement, method, args);
+            } catch (Throwable e) {
+                executed(shape, System.nanoTime() - start, -1);
+                throw e;
+            } finally {
+                if (batch) {
+                    batchSql = null;
+                } else {
+                    operation.counted(shape);
+                }
+            }
+            long elapsed = System.nanoTime() - start;
+            if (result instanceof ResultSet) {
+                executed(shape, elapsed, -1);
+                return Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] {ResultSet.class},
+                        new RowCounter((ResultSet) result, shape));
+            }
+            executed(shape, elapsed, rows(result));
+            return result;
+        }
+
+        private long rows(Object result) {
+            if (result instanceof Integer || result instanceof Long) {
+                return ((Number) result).longValue();
+            }
+            long total = 0;
+            if (result instanceof int[]) {
+                for (int count : (int[]) result) {
+                    total += Math.max(0, count);
+                }
+            } else if (result instanceof long[]) {
+                for (long count : (long[]) result) {
+                    total += Math.max(0, count);
+                }
+            } else {
+                return -1;
+            }
+            return total;
+        }
+    }
+
+    /** Adds the rows a query's result set actually delivers to its shape. */
+    private static final class RowCounter implements InvocationHandler {
+        private final ResultSet resultSet;
+        private final ShapeStats shape;
+
+        RowCounter(ResultSet resultSet, ShapeStats shape) {
+            this.resultSet = resultSet;
+            this.shape = shape;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = StatementProfiler.invoke(resultSet, method, args);
+            if ("next".equals(method.getName()) && Boolean.TRUE.equals(result)) {
+                shape.rows.increment();
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+import java.util.EnumSet;
+
+/**
+ * Guest field validation shared by every front end. Each rule is a single
+ * pass over the characters and accepts exactly what the regular expression
+ * in its comment accepts under {@link String#matches}, without compiling or
+ * allocating anything per call.
+ */
+public final class Validators {
+    public enum Field {
+        NAME, CONTACT, ADDRESS, EMAIL
+    }
+
+    /** The combination of rules each front end has always applied. */
+    public enum Ruleset {
+        /** Hotel18018v3: "First Last" names, letter-and-digit addresses, any two to seven letter TLD. */
+        CONSOLE,
+        /** HotelGUI18018: capitalised names, addresses with three letters, listed TLDs only. */
+        DESK,
+        /** Hotel18033v1 and Hotel18033v2: capitalised names, letter-and-digit addresses, listed TLDs only. */
+        CLASSIC;
+
+        public boolean isValid(Field field, String value) {
+            switch (field) {
+                case NAME:
+                    return this == CONSOLE ? isFirstLastName(value) : isCapitalizedName(value);
+                case CONTACT:
+                    return isContactNumber(value);
+                case ADDRESS:
+                    return this == DESK ? hasThreeLetters(value) : isStreetAddress(value);
+                case EMAIL:
+                    return this == CONSOLE ? isEmail(value) : isListedDomainEmail(value);
+                default:
+                    throw new IllegalArgumentException("Unknown field " + field);
+            }
+        }
+    }
+
+    private Validators() {
+    }
+
+    /** Validates all four guest fields at once and returns the ones that failed. */
+    public static EnumSet<Field> validate(Ruleset rules, String name, String contact, String address, String email) {
+        EnumSet<Field> invalid = EnumSet.noneOf(Field.class);
+        if (!rules.isValid(Field.NAME, name)) {
+            invalid.add(Field.NAME);
+        }
+        if (!rules.isValid(Field.CONTACT, contact)) {
+            invalid.add(Field.CONTACT);
+        }
+        if (!rules.isValid(Field.ADDRESS, address)) {
+            invalid.add(Field.ADDRESS);
+        }
+        if (!rules.isValid(Field.EMAIL, email)) {
+            invalid.add(Field.EMAIL);
+        }
+        return invalid;
+    }
+
+    /** {@code ^[A-Z][a-z]+( [A-Z][a-z]+)+$} */
+    public static boolean isCapitalizedName(String s) {
+        int n = s.length();
+        int i = 0;
+        int words = 0;
+        while (true) {
+            int end = capitalizedWord(s, i);
+            if (end < 0) {
+                return false;
+            }
+            words++;
+            if (end == n) {
+                return words >= 2;
+            }
+            if (s.charAt(end) != ' ') {
+                return false;
+            }
+            i = end + 1;
+        }
+    }
+
+    /** {@code ^[A-Z][a-z]{1,}[ ]+[A-Z][a-z]{1,}$} */
+    public static boolean isFirstLastName(String s) {
+        int end = capitalizedWord(s, 0);
+        if (end < 0 || end == s.length() || s.charAt(end) != ' ') {
+            return false;
+        }
+        while (end < s.length() && s.charAt(end) == ' ') {
+            end++;
+        }
+        return capitalizedWord(s, end) == s.length();
+    }
+
+    /** {@code \d{10}} */
+    public static boolean isContactNumber(String s) {
+        if (s.length() != 10) {
+            return false;
+        }
+        for (int i = 0; i < 10; i++) {
+            if (!isDigit(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** {@code length >= 10 && .*[A-Za-z].* && .*\d.*} */
+    public static boolean isStreetAddress(String s) {
+        if (s.length() < 10) {
+            return false;
+        }
+        boolean letter = false;
+        boolean digit = false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (isLineTerminator(c)) {
+                return false;
+            }
+            letter |= isLetter(c);
+            digit |= isDigit(c);
+        }
+        return letter && digit;
+    }
+
+    /** {@code .*[a-zA-Z].*[a-zA-Z].*[a-zA-Z].*} */
+    public static boolean hasThreeLetters(String s) {
+        int letters = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (isLineTerminator(c)) {
+                return false;
+            }
+            if (isLetter(c)) {
+                letters++;
+            }
+        }
+        return letters >= 3;
+    }
+
+    /** {@code ^[a-zA-Z0-9_+&*-]+(?:\.[a-zA-Z0-9_+&*-]+)*@(?:[a-zA-Z0-9-]+\.)+[a-zA-Z]{2,7}$} */
+    public static boolean isEmail(String s) {
+        int at = s.indexOf('@');
+        if (at <= 0) {
+            return false;
+        }
+        int segment = 0;
+        for (int i = 0; i < at; i++) {
+            char c = s.charAt(i);
+            if (c == '.') {
+                if (segment == 0) {
+                    return false;
+                }
+                segment = 0;
+            } else if (isLetter(c) || isDigit(c) || c == '_' || c == '+' || c == '&' || c == '*' || c == '-') {
+                segment++;
+            } else {
+                return false;
+            }
+        }
+        if (segment == 0) {
+            return false;
+        }
+
+        int lastDot = s.lastIndexOf('.');
+        if (lastDot <= at) {
+            return false;
+        }
+        int label = 0;
+        for (int i = at + 1; i < lastDot; i++) {
+            char c = s.charAt(i);
+            if (c == '.') {
+                if (label == 0) {
+                    return false;
+                }
+                label = 0;
+            } else if (isLetter(c) || isDigit(c) || c == '-') {
+                label++;
+            } else {
+                return false;
+            }
+        }
+        int tld = s.length() - lastDot - 1;
+        if (label == 0 || tld < 2 || tld > 7) {
+            return false;
+        }
+        for (int i = lastDot + 1; i < s.length(); i++) {
+            if (!isLetter(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** {@code ^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\.(com|in|edu|org|net)$} */
+    public static boolean isListedDomainEmail(String s) {
+        int at = s.indexOf('@');
+        if (at <= 0) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (i == at) {
+                continue;
+            }
+            boolean allowed = isLetter(c) || isDigit(c) || c == '.' || c == '-' || (i < at && (c == '+' || c == '_'));
+            if (!allowed) {
+                return false;
+            }
+        }
+        int domain = s.length() - at - 1;
+        return listedSuffix(s, ".com", domain) || listedSuffix(s, ".in", domain) || listedSuffix(s, ".edu", domain)
+                || listedSuffix(s, ".org", domain) || listedSuffix(s, ".net", domain);
+    }
+
+    private static boolean listedSuffix(String s, String suffix, int domainLength) {
+        return domainLength > suffix.length() && s.endsWith(suffix);
+    }
+
+    /** Returns the index just past {@code [A-Z][a-z]+} starting at {@code from}, or -1. */
+    private static int capitalizedWord(String s, int from) {
+        if (from >= s.length() || !isUpper(s.charAt(from))) {
+            return -1;
+        }
+        int i = from + 1;
+        while (i < s.length() && isLower(s.charAt(i))) {
+            i++;
+        }
+        return i - from >= 2 ? i : -1;
+    }
+
+    private static boolean isUpper(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    private static boolean isLower(char c) {
+        return c >= 'a' && c <= 'z';
+    }
+
+    private static boolean isLetter(char c) {
+        return isUpper(c) || isLower(c);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
@@ -0,0 +1,71 @@
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * Checks the {@link Validators} scanners against the {@code String.matches}
+ * calls they replace: every rule is fuzzed against its regex, so the JMH
+ * timings in {@code benchmarks/} ({@code validateGuest} against
+ * {@code validateGuestRegex}) only ever compare equivalent implementations.
+ *
+ * Run with {@code javac ValidatorsCheck.java && java ValidatorsCheck}.
+ */
+public class ValidatorsCheck {
+    private static final String[] SAMPLES = {
+            "John Doe", "Mary Jane Watson", "john doe", "John  Doe", "J Doe", "John Doe ", "JohnDoe", "Anna Maria",
+            "9876543210", "98765 43210", "987654321", "98765432101", "abcdefghij",
+            "221B Baker Street", "Flat 4, MG Road", "Short 1", "No digits here", "1234567890", "12 Main St\n",
+            "user@example.com", "first.last+tag@mail.example.in", "a@b.co", "user@@example.com", "user@example",
+            ".user@example.com", "user.@example.com", "user@example..com", "user@-example.org", "u_s-e+r@ex.net",
+            "user@example.museum", "user@example.c", "user@exam_ple.com", "user@example.com.", "x@y.edu", "@example.com",
+    };
+
+    private static final String ALPHABET = "aZz09 .@_+-&*\n\r\u2028";
+
+    public static void main(String[] args) {
+        check("capitalized name", Validators::isCapitalizedName, s -> s.matches("^[A-Z][a-z]+( [A-Z][a-z]+)+$"));
+        check("first last name", Validators::isFirstLastName, s -> s.matches("^[A-Z][a-z]{1,}[ ]+[A-Z][a-z]{1,}$"));
+        check("contact", Validators::isContactNumber, s -> s.matches("\\d{10}"));
+        check("street address", Validators::isStreetAddress,
+                s -> s.length() >= 10 && s.matches(".*[A-Za-z].*") && s.matches(".*[0-9].*"));
+        check("three letters", Validators::hasThreeLetters, s -> s.matches(".*[a-zA-Z].*[a-zA-Z].*[a-zA-Z].*"));
+        check("email", Validators::isEmail,
+                s -> s.matches("^[a-zA-Z0-9_+&*-]+(?:\\.[a-zA-Z0-9_+&*-]+)*@(?:[a-zA-Z0-9-]+\\.)+[a-zA-Z]{2,7}$"));
+        check("listed domain email", Validators::isListedDomainEmail,
+                s -> s.matches("^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\\.(com|in|edu|org|net)$"));
+        System.out.println("Every rule agrees with its regex");
+    }
+
+    private static void check(String rule, Predicate<String> scanner, Predicate<String> regex) {
+        for (String sample : SAMPLES) {
+            compare(rule, sample, scanner, regex);
+        }
+        Random random = new Random(42);
+        StringBuilder fuzz = new StringBuilder();
+        for (int i = 0; i < 200_000; i++) {
+            String base = SAMPLES[random.nextInt(SAMPLES.length)];
+            fuzz.setLength(0);
+            fuzz.append(base);
+            for (int edits = random.nextInt(3); edits >= 0 && fuzz.length() > 0; edits--) {
+                int at = random.nextInt(fuzz.length());
+                char c = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+                switch (random.nextInt(3)) {
+                    case 0:
+                        fuzz.setCharAt(at, c);
+                        break;
+                    case 1:
+                        fuzz.insert(at, c);
+                        break;
+                    default:
+                        fuzz.deleteCharAt(at);
+                }
+            }
+            compare(rule, fuzz.toString(), scanner, regex);
+        }
+    }
+
+    private static void compare(String rule, String input, Predicate<String> scanner, Predicate<String> regex) {
+        if (scanner.test(input) != regex.test(input)) {
+            throw new AssertionError(rule + " disagrees with its regex on \"" + input + "\"");
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package hotel;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Timings for the booking hot paths at several property sizes: room lookup
+ * by number, available-room listing, booking rendering, guest validation
+ * (and the {@code String.matches} calls it replaced, as a baseline),
+ * quoting a stay against a few hundred pricing rules, recording one latency
+ * sample, an in-memory booking round trip (validate, check, reserve,
+ * release), and the desk's save path end to end through
+ * {@link CachingBookingService} with an {@link InMemoryRepository} standing
+ * in for the database.
+ *
+ * Build and run from {@code benchmarks/} with
+ * {@code mvn -B package && java -Xmx2g -jar target/benchmarks.jar};
+ * add {@code -p rooms=10000} to run one size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class HotelBenchmarks {
+    private static final RoomType[] TYPES = RoomType.values();
+
+    @Param({"15", "10000", "1000000"})
+    public int rooms;
+
+    private LocalDate today;
+    private RoomStore store;
+    private AvailabilityCalendar calendar;
+    private int[] probes;
+    private String[] names;
+    private String[] contacts;
+    private String[] addresses;
+    private String[] emails;
+    private BookingRecord record;
+    private RateEngine rates;
+    private List<BookingService.RoomInfo> stay;
+    private LatencyHistogram latencies;
+    private InMemoryRepository repository;
+    private CachingBookingService service;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        today = LocalDate.now();
+        store = new RoomStore();
+        calendar = new AvailabilityCalendar(today);
+        repository = new InMemoryRepository();
+        int[] numbers = new int[rooms];
+        Random random = new Random(7);
+        for (int i = 0; i < rooms; i++) {
+            numbers[i] = 101 + i;
+            RoomType type = TYPES[i % TYPES.length];
+            store.add(numbers[i], type.getLabel(), type.getPrice(), true);
+            repository.saveRoom(numbers[i], type.getLabel(), type.getPrice());
+            // About a third of the rooms carry a stay somewhere in the next month.
+            if (random.nextInt(3) == 0) {
+                LocalDate checkIn = today.plusDays(random.nextInt(30));
+                calendar.occupy(i, checkIn, checkIn.plusDays(1 + random.nextInt(7)));
+            }
+        }
+        probes = new int[1 << 12];
+        for (int i = 0; i < probes.length; i++) {
+            probes[i] = numbers[random.nextInt(rooms)];
+        }
+
+        // Valid and invalid guests, read from fields and rotated so the JIT cannot fold the inputs.
+        names = new String[] {"John Doe", "Mary Jane Watson", "john doe", "John  Doe", "J Doe", "John Doe ", "JohnDoe", "Anna Maria"};
+        contacts = new String[] {"9876543210", "98765 43210", "987654321", "98765432101", "abcdefghij"};
+        addresses = new String[] {"221B Baker Street", "Flat 4, MG Road", "Short 1", "No digits here", "1234567890", "12 Main St\n"};
+        emails = new String[] {"user@example.com", "first.last+tag@mail.example.in", "a@b.co", "user@@example.com", "user@example",
+                ".user@example.com", "user.@example.com", "user@example..com", "user@-example.org", "u_s-e+r@ex.net",
+                "user@example.museum", "user@example.c", "user@exam_ple.com", "user@example.com.", "x@y.edu", "@example.com"};
+
+        record = new BookingRecord(1, "John Doe", "9876543210", "221B Baker Street", "john.doe@example.com",
+                new int[] {probes[0], probes[1], probes[2]});
+
+        rates = new RateEngine(today);
+        for (int i = 0; i < 300; i++) {
+            LocalDate from = today.plusDays(random.nextInt(RateEngine.HORIZON_DAYS - 14));
+            rates.addRule(RateEngine.Rule.season(from, from.plusDays(1 + random.nextInt(14)),
+                    i % 4 == 0 ? null : TYPES[i % TYPES.length].getLabel(), 0.8 + random.nextInt(60) / 100.0));
+        }
+        rates.addRule(RateEngine.Rule.occupancy(0.8, null, 1.25));
+        rates.setRoomCount(rooms);
+        stay = List.of(store.get(probes[0]), store.get(probes[1]), store.get(probes[2]));
+
+        latencies = new LatencyHistogram();
+        service = new CachingBookingService(repository, repository, Validators.Ruleset.DESK);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.close();
+        repository.close();
+    }
+
+    @Benchmark
+    public int findRoomByNumber() {
+        return store.get(probes[next++ & (probes.length - 1)]).getRoomNumber();
+    }
+
+    @Benchmark
+    public int availableRoomsTonight() {
+        return store.available(null, calendar, today, today.plusDays(1)).size();
+    }
+
+    @Benchmark
+    public int availableSuitesThreeNights() {
+        return store.available("Suite", calendar, today.plusDays(10), today.plusDays(13)).size();
+    }
+
+    @Benchmark
+    public String bookingToString() {
+        return record.toString();
+    }
+
+    @Benchmark
+    public int validateGuest() {
+        int i = next++ & 0xFFFF;
+        return Validators.validate(Validators.Ruleset.CONSOLE, names[i % names.length], contacts[i % contacts.length],
+                addresses[i % addresses.length], emails[i % emails.length]).size();
+    }
+
+    /** The console's checks as they were before {@link Validators}: one {@code String.matches} per rule. */
+    @Benchmark
+    public int validateGuestRegex() {
+        int i = next++ & 0xFFFF;
+        String name = names[i % names.length];
+        String contact = contacts[i % contacts.length];
+        String address = addresses[i % addresses.length];
+        String email = emails[i % emails.length];
+        int invalid = 0;
+        if (!name.matches("^[A-Z][a-z]{1,}[ ]+[A-Z][a-z]{1,}$")) {
+            invalid++;
+        }
+        if (!contact.matches("[0-9]{10}")) {
+            invalid++;
+        }
+        if (!(address.length() >= 10 && address.matches(".*[A-Za-z].*") && address.matches(".*[0-9].*"))) {
+            invalid++;
+        }
+        if (!email.matches("^[a-zA-Z0-9_+&*-]+(?:\\.[a-zA-Z0-9_+&*-]+)*@(?:[a-zA-Z0-9-]+\\.)+[a-zA-Z]{2,7}$")) {
+            invalid++;
+        }
+        return invalid;
+    }
+
+    @Benchmark
+    public double quoteThreeRoomsSevenNights() {
+        int offset = next++ & 255;
+        return rates.quote(stay, today.plusDays(offset), today.plusDays(offset + 7));
+    }
+
+    @Benchmark
+    public void recordLatencySample() {
+        latencies.record(1_000 + (next++ & 0xFFFFF));
+    }
+
+    @Benchmark
+    public boolean bookAndReleaseInMemory() {
+        int i = next++;
+        int roomNumber = probes[i & (probes.length - 1)];
+        LocalDate checkIn = today.plusDays(i & 63);
+        BookingRequest request = new BookingRequest(new int[] {roomNumber}, "John Doe", "9876543210",
+                "221B Baker Street", "john.doe@example.com", checkIn, checkIn.plusDays(2));
+        if (!Validators.validate(Validators.Ruleset.CONSOLE, request.getName(), request.getContact(),
+                request.getAddress(), request.getEmail()).isEmpty() || !store.isAvailable(roomNumber)) {
+            return false;
+        }
+        int slot = store.slot(roomNumber);
+        if (!calendar.reserve(slot, request.getCheckIn(), request.getCheckOut())) {
+            return false;
+        }
+        calendar.release(slot, request.getCheckIn(), request.getCheckOut());
+        return true;
+    }
+
+    /**
+     * What the desk's Book button does once the dialog is filled in: the
+     * service validates the guest and books through the repository. The
+     * booking is cancelled again so the inventory stays the same size
+     * across iterations.
+     */
+    @Benchmark
+    public long saveBooking() throws SQLException {
+        int i = next++;
+        LocalDate checkIn = today.plusDays(i & 63);
+        BookingRequest request = new BookingRequest(new int[] {probes[i & (probes.length - 1)]}, "John Doe", "9876543210",
+                "221B Baker Street", "john.doe@example.com", checkIn, checkIn.plusDays(2));
+        try {
+            long bookingId = service.book(request);
+            service.cancel(bookingId);
+            return bookingId;
+        } catch (RoomUnavailableException e) {
+            return -1;
+        }
+    }
+}